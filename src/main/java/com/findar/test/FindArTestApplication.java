@@ -2,8 +2,10 @@ package com.findar.test;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FindArTestApplication {
     public static void main(String[] args) {
         SpringApplication.run(FindArTestApplication.class, args);
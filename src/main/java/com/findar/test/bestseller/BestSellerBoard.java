@@ -0,0 +1,234 @@
+package com.findar.test.bestseller;
+
+import com.findar.test.dtos.BestSellerDto;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.SalesAppliedEvent;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SaleRecord;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Best-selling books overall and per category, kept up to date from the {@link SalesAppliedEvent}s
+ * in {@link SpaceSaving} summaries of a fixed number of counters, so memory does not grow with the catalog.
+ * Counts are estimates: never below the copies actually sold, and above by at most the overestimate given with them.
+ * <p>
+ * The summaries are checkpointed to local disk with the journal sequence of the first sale not counted.
+ * On startup the checkpoint is loaded and the sales made since are read back from the sales journal,
+ * without a checkpoint the whole journal is read.
+ */
+@Component
+public class BestSellerBoard {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BestSellerBoard.class);
+    private static final int MAGIC = 0x4253424f;
+    private static final int FORMAT_VERSION = 1;
+
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+    private final SalesLedger salesLedger;
+    private final Path file;
+    private final int capacity;
+
+    private SpaceSaving overall;
+    private final Map<Categories, SpaceSaving> perCategory = new EnumMap<>(Categories.class);
+    private long nextSequence;
+
+    @Autowired
+    public BestSellerBoard(BookRepository bookRepository,
+                           ShardRouter shardRouter,
+                           SalesLedger salesLedger,
+                           @Value("${bookstore.best-sellers.file:data/best-sellers.checkpoint}") String file,
+                           @Value("${bookstore.best-sellers.capacity:1000}") int capacity) {
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+        this.salesLedger = salesLedger;
+        this.file = Paths.get(file);
+        this.capacity = capacity;
+        reset();
+    }
+
+    /**
+     * Loads the checkpoint and counts the sales made since.
+     *
+     * @throws IOException
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        if (Files.exists(file)) {
+            try {
+                read();
+            } catch (IOException e) {
+                LOGGER.warn("Best-seller checkpoint {} is unreadable and is discarded.", file, e);
+                reset();
+            }
+        }
+        long checkpointed = nextSequence;
+        salesLedger.forEachSale(nextSequence, this::record);
+        LOGGER.info("Best-sellers loaded, {} sales counted since the checkpoint.", nextSequence - checkpointed);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSalesApplied(SalesAppliedEvent event) {
+        event.getSales().forEach(this::record);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Best-selling books, most sold first
+     *
+     * @param categories null for every category
+     * @param limit      at most {@link #getCapacity()}
+     * @return
+     */
+    public List<BestSellerDto> getBestSellers(Categories categories, int limit) {
+        List<SpaceSaving.Counter> top;
+        synchronized (this) {
+            top = (categories == null ? overall : perCategory.get(categories)).top(limit);
+        }
+        Map<Long, Book> books = shardRouter.onShardsOf(top.stream().map(SpaceSaving.Counter::getBookId)
+                .collect(Collectors.toList()), bookRepository::findAllById).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return top.stream()
+                .map(counter -> {
+                    Book book = books.get(counter.getBookId());
+                    return BestSellerDto.builder()
+                            .id(counter.getBookId())
+                            .title(book == null ? null : book.getTitle())
+                            .author(book == null ? null : book.getAuthor())
+                            .categories(book == null ? categories : book.getCategories())
+                            .sold(counter.getCount())
+                            .maxOverestimate(counter.getError())
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes the checkpoint.
+     */
+    @Scheduled(initialDelayString = "${bookstore.best-sellers.checkpoint-interval-ms:60000}",
+            fixedDelayString = "${bookstore.best-sellers.checkpoint-interval-ms:60000}")
+    public void write() {
+        try {
+            //Encoded under the lock, written without it
+            byte[] checkpoint = encode();
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path partFile = file.resolveSibling(file.getFileName() + ".part");
+            Files.write(partFile, checkpoint);
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("Best-seller checkpoint written to {}.", file);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write best-seller checkpoint {}.", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void writeOnShutdown() {
+        write();
+    }
+
+    //Sales already counted are skipped, so catching up with the journal and the events may overlap
+    synchronized void record(SaleRecord sale) {
+        if (sale.getSequence() < nextSequence) {
+            return;
+        }
+        overall.add(sale.getBookId(), sale.getQuantity());
+        if (sale.getCategories() != null) {
+            perCategory.get(sale.getCategories()).add(sale.getBookId(), sale.getQuantity());
+        }
+        nextSequence = sale.getSequence() + 1;
+    }
+
+    private void reset() {
+        overall = new SpaceSaving(capacity);
+        for (Categories categories : Categories.values()) {
+            perCategory.put(categories, new SpaceSaving(capacity));
+        }
+        nextSequence = 0;
+    }
+
+    private synchronized byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(capacity);
+            out.writeLong(nextSequence);
+            writeSummary(out, overall);
+            out.writeInt(perCategory.size());
+            for (Map.Entry<Categories, SpaceSaving> entry : perCategory.entrySet()) {
+                out.writeInt(entry.getKey().getValue());
+                writeSummary(out, entry.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private synchronized void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != capacity) {
+                LOGGER.info("Best-seller checkpoint {} has another format or capacity and is discarded.", file);
+                return;
+            }
+            nextSequence = in.readLong();
+            readSummary(in, overall);
+            int categories = in.readInt();
+            for (int i = 0; i < categories; i++) {
+                int value = in.readInt();
+                Categories category = Categories.valueOf(value);
+                if (category == null) {
+                    throw new IOException("Unknown category " + value);
+                }
+                readSummary(in, perCategory.get(category));
+            }
+        }
+    }
+
+    private static void writeSummary(DataOutputStream out, SpaceSaving summary) throws IOException {
+        out.writeLong(summary.getTotal());
+        out.writeInt(summary.counters().size());
+        for (SpaceSaving.Counter counter : summary.counters()) {
+            out.writeLong(counter.getBookId());
+            out.writeLong(counter.getCount());
+            out.writeLong(counter.getError());
+        }
+    }
+
+    private static void readSummary(DataInputStream in, SpaceSaving summary) throws IOException {
+        summary.restoreTotal(in.readLong());
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            summary.restore(in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.findar.test.bestseller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving summary of the books sold the most, in a fixed number of counters.
+ * When every counter is in use, a book not tracked takes over the counter with the lowest count,
+ * so its count is overestimated by at most the count taken over, which is kept as its error.
+ * A book sold more than total / capacity copies is always tracked.
+ * Not thread-safe.
+ */
+class SpaceSaving {
+
+    private static final Comparator<Counter> BY_COUNT = Comparator.comparingLong((Counter counter) -> counter.count)
+            .thenComparingLong(counter -> counter.bookId);
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+    private long total;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void add(long bookId, long quantity) {
+        total += quantity;
+        Counter counter = counters.get(bookId);
+        if (counter == null) {
+            if (counters.size() < capacity) {
+                counter = new Counter(bookId, 0, 0);
+            } else {
+                Counter smallest = byCount.pollFirst();
+                counters.remove(smallest.bookId);
+                counter = new Counter(bookId, smallest.count, smallest.count);
+            }
+            counters.put(bookId, counter);
+        } else {
+            byCount.remove(counter);
+        }
+        counter.count += quantity;
+        byCount.add(counter);
+    }
+
+    /**
+     * @param limit
+     * @return counters with the highest counts, highest first
+     */
+    List<Counter> top(int limit) {
+        List<Counter> top = new ArrayList<>(Math.min(limit, counters.size()));
+        Iterator<Counter> iterator = byCount.descendingIterator();
+        while (top.size() < limit && iterator.hasNext()) {
+            top.add(iterator.next().copy());
+        }
+        return top;
+    }
+
+    Collection<Counter> counters() {
+        return byCount;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    //Restores a counter of a checkpoint
+    void restore(long bookId, long count, long error) {
+        if (counters.size() >= capacity) {
+            throw new IllegalStateException("More counters than the capacity of " + capacity);
+        }
+        Counter counter = new Counter(bookId, count, error);
+        counters.put(bookId, counter);
+        byCount.add(counter);
+    }
+
+    void restoreTotal(long total) {
+        this.total = total;
+    }
+
+    static final class Counter {
+        private final long bookId;
+        private long count;
+        private final long error;
+
+        Counter(long bookId, long count, long error) {
+            this.bookId = bookId;
+            this.count = count;
+            this.error = error;
+        }
+
+        long getBookId() {
+            return bookId;
+        }
+
+        /**
+         * @return copies sold, overestimated by at most the error
+         */
+        long getCount() {
+            return count;
+        }
+
+        long getError() {
+            return error;
+        }
+
+        private Counter copy() {
+            return new Counter(bookId, count, error);
+        }
+    }
+}
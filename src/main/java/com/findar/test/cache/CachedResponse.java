@@ -0,0 +1,18 @@
+package com.findar.test.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Serialized response body, with its gzip encoding when compression was worth it.
+ */
+@Getter
+@AllArgsConstructor
+public class CachedResponse {
+    private final byte[] body;
+
+    /**
+     * gzip-compressed body or null if the body is not stored compressed
+     */
+    private final byte[] gzipBody;
+}
@@ -0,0 +1,152 @@
+package com.findar.test.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.findar.test.enums.BookField;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.CatalogChangedEvent;
+import com.findar.test.web.WireFormats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the serialized bytes of the catalog listings so repeated listings are a buffer copy
+ * instead of a mapping and serialization pass. Listings are kept per wire format. Every {@link CatalogChangedEvent} drops all entries.
+ */
+@Component
+public class CatalogResponseCache {
+
+    private static final String ALL_BOOKS = "ALL";
+
+    private final WireFormats wireFormats;
+    private final boolean gzipEnabled;
+    private final int gzipMinSize;
+
+    private final ConcurrentMap<String, CachedResponse> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public CatalogResponseCache(WireFormats wireFormats,
+                                @Value("${bookstore.catalog-cache.gzip:true}") boolean gzipEnabled,
+                                @Value("${bookstore.catalog-cache.gzip-min-size:1024}") int gzipMinSize) {
+        this.wireFormats = wireFormats;
+        this.gzipEnabled = gzipEnabled;
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    /**
+     * Serialized listing of all books.
+     *
+     * @param mediaType encoding of the listing
+     * @param loader    loads the listing on a cache miss
+     * @return
+     */
+    public CachedResponse getAllBooks(MediaType mediaType, Supplier<?> loader) {
+        return get(mediaType, ALL_BOOKS, loader);
+    }
+
+    /**
+     * Serialized listing of all books narrowed to some fields.
+     *
+     * @param mediaType encoding of the listing
+     * @param fields
+     * @param loader    loads the listing on a cache miss
+     * @return
+     */
+    public CachedResponse getAllBooks(MediaType mediaType, Set<BookField> fields, Supplier<?> loader) {
+        return get(mediaType, ALL_BOOKS + fieldsKey(fields), loader);
+    }
+
+    /**
+     * Serialized listing of the books of one category.
+     *
+     * @param mediaType  encoding of the listing
+     * @param categories
+     * @param loader     loads the listing on a cache miss
+     * @return
+     */
+    public CachedResponse getBooksByCategories(MediaType mediaType, Categories categories, Supplier<?> loader) {
+        return get(mediaType, categories.name(), loader);
+    }
+
+    /**
+     * Serialized listing of the books of one category narrowed to some fields.
+     *
+     * @param mediaType  encoding of the listing
+     * @param categories
+     * @param fields
+     * @param loader     loads the listing on a cache miss
+     * @return
+     */
+    public CachedResponse getBooksByCategories(MediaType mediaType, Categories categories, Set<BookField> fields,
+                                               Supplier<?> loader) {
+        return get(mediaType, categories.name() + fieldsKey(fields), loader);
+    }
+
+    /**
+     * Drops all cached listings once the change that caused the event is committed.
+     *
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        invalidate();
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private CachedResponse get(MediaType mediaType, String listing, Supplier<?> loader) {
+        String key = mediaType.getSubtype() + ":" + listing;
+        CachedResponse cached = entries.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAt = generation.get();
+        CachedResponse loaded = serialize(mediaType, loader.get());
+        if (generation.get() == loadedAt) {
+            entries.put(key, loaded);
+            //An invalidation may have slipped in between the check and the put
+            if (generation.get() != loadedAt) {
+                entries.remove(key, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    private CachedResponse serialize(MediaType mediaType, Object value) {
+        try {
+            byte[] body = wireFormats.mapperFor(mediaType).writeValueAsBytes(value);
+            return new CachedResponse(body, gzipEnabled && body.length >= gzipMinSize ? gzip(body) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize catalog listing.", e);
+        }
+    }
+
+    private static String fieldsKey(Set<BookField> fields) {
+        return fields.stream().map(BookField::getProperty).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
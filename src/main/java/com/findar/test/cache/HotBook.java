@@ -0,0 +1,16 @@
+package com.findar.test.cache;
+
+import com.findar.test.entities.Book;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A book held by the {@link HotBookCache} with its access count.
+ */
+@Getter
+@AllArgsConstructor
+public class HotBook {
+    private final Book book;
+
+    private final long hits;
+}
@@ -0,0 +1,153 @@
+package com.findar.test.cache;
+
+import com.findar.test.entities.Book;
+import com.findar.test.events.CatalogChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory copies of the most accessed books, in front of {@link com.findar.test.repositories.BookRepository#findById}.
+ * Every access is counted; {@link #trim()} keeps the most accessed books and ages the counts so
+ * books that cool down make room for new ones. A changed book keeps its count but is reloaded
+ * on its next access.
+ */
+@Component
+public class HotBookCache {
+
+    private final int maxEntries;
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    public HotBookCache(@Value("${bookstore.hot-cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get a book, loading it on a miss.
+     *
+     * @param id
+     * @param loader loads the book on a miss
+     * @return a copy of the book, empty if the loader found none
+     */
+    public Optional<Book> get(Long id, Function<Long, Optional<Book>> loader) {
+        Entry existing = entries.get(id);
+        if (existing == null && entries.size() >= maxEntries) {
+            return loader.apply(id);
+        }
+        Entry entry = existing != null ? existing : entries.computeIfAbsent(id, key -> new Entry());
+        entry.hits.increment();
+        Book cached = entry.book;
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        long generation = entry.generation;
+        Optional<Book> loaded = loader.apply(id);
+        loaded.ifPresent(book -> entry.set(copy(book), generation));
+        return loaded;
+    }
+
+    /**
+     * Put a book that was loaded elsewhere, eg: from the warm-start snapshot.
+     *
+     * @param book
+     * @param hits access count to start from
+     */
+    public void put(Book book, long hits) {
+        Entry entry = entries.computeIfAbsent(book.getId(), key -> new Entry());
+        entry.hits.add(hits);
+        entry.set(copy(book), entry.generation);
+    }
+
+    /**
+     * @param limit
+     * @return the most accessed books held in memory with their access counts, most accessed first
+     */
+    public List<HotBook> getHottest(int limit) {
+        return entries.values().stream()
+                .filter(entry -> entry.book != null)
+                .map(entry -> new HotBook(copy(entry.book), entry.hits.sum()))
+                .sorted(Comparator.comparingLong(HotBook::getHits).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Drops the least accessed books down to three quarters of the capacity and halves all access counts.
+     */
+    public void trim() {
+        if (entries.size() > maxEntries * 3 / 4) {
+            entries.entrySet().stream()
+                    .sorted(Comparator.comparingLong(mapEntry -> mapEntry.getValue().hits.sum()))
+                    .limit(entries.size() - maxEntries * 3 / 4)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList())
+                    .forEach(entries::remove);
+        }
+        entries.values().forEach(entry -> {
+            long half = entry.hits.sum() / 2;
+            entry.hits.add(-half);
+        });
+    }
+
+    /**
+     * Changed books are reloaded on their next access, once the change is committed.
+     *
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        event.getBookIds().forEach(this::invalidate);
+    }
+
+    /**
+     * The book is reloaded on its next access, loads started before are not kept.
+     *
+     * @param id
+     */
+    public void invalidate(Long id) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            entry.invalidate();
+        }
+    }
+
+    private static Book copy(Book book) {
+        return Book.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .categories(book.getCategories())
+                .price(book.getPrice())
+                .totalCount(book.getTotalCount())
+                .version(book.getVersion())
+                .build();
+    }
+
+    private static class Entry {
+        private final LongAdder hits = new LongAdder();
+        private volatile Book book;
+        private volatile long generation;
+
+        //A load started before an invalidation must not overwrite it
+        synchronized void set(Book loaded, long loadedAtGeneration) {
+            if (generation == loadedAtGeneration) {
+                book = loaded;
+            }
+        }
+
+        synchronized void invalidate() {
+            generation++;
+            book = null;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.findar.test.cache;
+
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.repositories.BookVersion;
+import com.findar.test.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the hottest books of the {@link HotBookCache} to a compact binary file on local disk
+ * and loads them back on startup, before the web server accepts requests, so a new instance
+ * does not start cold.
+ * <p>
+ * Each book is stored with its row version. On load the versions are checked against the
+ * book table with one query per chunk of ids and shard, and books changed since the snapshot are dropped.
+ * Snapshots of another format or older than the maximum age are discarded as a whole.
+ */
+@Component
+public class WarmStartSnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmStartSnapshot.class);
+    private static final int MAGIC = 0x424b5353;
+    private static final int FORMAT_VERSION = 1;
+    private static final int VALIDATION_CHUNK = 1000;
+
+    private final HotBookCache hotBookCache;
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+    private final Path file;
+    private final int maxBooks;
+    private final Duration maxAge;
+
+    public WarmStartSnapshot(HotBookCache hotBookCache,
+                             BookRepository bookRepository,
+                             ShardRouter shardRouter,
+                             @Value("${bookstore.warm-start.file:data/hot-books.snapshot}") String file,
+                             @Value("${bookstore.warm-start.max-books:5000}") int maxBooks,
+                             @Value("${bookstore.warm-start.max-age-minutes:1440}") long maxAgeMinutes) {
+        this.hotBookCache = hotBookCache;
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+        this.file = Paths.get(file);
+        this.maxBooks = maxBooks;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+    }
+
+    /**
+     * Loads the last snapshot into the {@link HotBookCache}.
+     */
+    @PostConstruct
+    public void load() {
+        if (!Files.exists(file)) {
+            LOGGER.info("No warm-start snapshot at {}, starting cold.", file);
+            return;
+        }
+        List<HotBook> snapshot;
+        try {
+            snapshot = read();
+        } catch (IOException e) {
+            LOGGER.warn("Warm-start snapshot {} is unreadable and is discarded.", file, e);
+            return;
+        }
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        int loaded = 0;
+        for (int from = 0; from < snapshot.size(); from += VALIDATION_CHUNK) {
+            List<HotBook> chunk = snapshot.subList(from, Math.min(from + VALIDATION_CHUNK, snapshot.size()));
+            Map<Long, Long> versions = shardRouter.onShardsOfSequentially(chunk.stream()
+                    .map(hotBook -> hotBook.getBook().getId())
+                    .collect(Collectors.toList()), bookRepository::findVersionsByIdIn)
+                    .stream()
+                    .collect(Collectors.toMap(BookVersion::getId, BookVersion::getVersion));
+            for (HotBook hotBook : chunk) {
+                Long version = versions.get(hotBook.getBook().getId());
+                if (version != null && version == hotBook.getBook().getVersion()) {
+                    hotBookCache.put(hotBook.getBook(), hotBook.getHits());
+                    loaded++;
+                }
+            }
+        }
+        LOGGER.info("Warm-start snapshot loaded, {} of {} books still current.", loaded, snapshot.size());
+    }
+
+    /**
+     * Writes the hottest books and ages the access counts.
+     */
+    @Scheduled(initialDelayString = "${bookstore.warm-start.interval-ms:60000}",
+            fixedDelayString = "${bookstore.warm-start.interval-ms:60000}")
+    public void write() {
+        List<HotBook> hottest = hotBookCache.getHottest(maxBooks);
+        hotBookCache.trim();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path partFile = file.resolveSibling(file.getFileName() + ".part");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(hottest.size());
+                for (HotBook hotBook : hottest) {
+                    Book book = hotBook.getBook();
+                    out.writeLong(book.getId());
+                    out.writeLong(book.getVersion());
+                    out.writeLong(hotBook.getHits());
+                    out.writeFloat(book.getPrice());
+                    out.writeInt(book.getTotalCount());
+                    out.writeByte(book.getCategories() == null ? -1 : book.getCategories().getValue());
+                    writeNullableUTF(out, book.getTitle());
+                    writeNullableUTF(out, book.getAuthor());
+                }
+            }
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("Warm-start snapshot of {} books written to {}.", hottest.size(), file);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write warm-start snapshot {}.", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void writeOnShutdown() {
+        write();
+    }
+
+    private List<HotBook> read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Warm-start snapshot {} has another format and is discarded.", file);
+                return new ArrayList<>();
+            }
+            Duration age = Duration.ofMillis(System.currentTimeMillis() - in.readLong());
+            if (age.compareTo(maxAge) > 0) {
+                LOGGER.info("Warm-start snapshot {} is {} old and is discarded.", file, age);
+                return new ArrayList<>();
+            }
+            int size = in.readInt();
+            List<HotBook> snapshot = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long id = in.readLong();
+                long version = in.readLong();
+                long hits = in.readLong();
+                float price = in.readFloat();
+                int totalCount = in.readInt();
+                byte categories = in.readByte();
+                Book book = Book.builder()
+                        .id(id)
+                        .version(version)
+                        .price(price)
+                        .totalCount(totalCount)
+                        .categories(categories < 0 ? null : Categories.valueOf(categories))
+                        .title(readNullableUTF(in))
+                        .author(readNullableUTF(in))
+                        .build();
+                snapshot.add(new HotBook(book, hits));
+            }
+            return snapshot;
+        }
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.findar.test.configs;
+
+import com.findar.test.logging.SqlSamplingStatementInspector;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class LoggingConfig {
+    /**
+     * Registers the {@link SqlSamplingStatementInspector} so SQL of sampled requests is logged.
+     *
+     * @return
+     */
+    @Bean
+    public HibernatePropertiesCustomizer sqlSamplingCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlSamplingStatementInspector());
+    }
+}
@@ -0,0 +1,79 @@
+package com.findar.test.configs;
+
+import com.findar.test.sharding.ShardRoutingDataSource;
+import com.findar.test.sharding.ShardSchemaIntegrator;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replaces the single spring.datasource by one datasource per shard when bookstore.sharding.urls is set.
+ * <p>
+ * Requires spring.jpa.open-in-view=false: a session open for the whole request holds the connection taken
+ * on its first statement, so every later repository call of the request would run on that first shard.
+ */
+@Configuration
+@ConditionalOnProperty("bookstore.sharding.urls")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(@Value("${bookstore.sharding.urls}") String[] urls,
+                                                         @Value("${bookstore.sharding.username:${spring.datasource.username:}}") String username,
+                                                         @Value("${bookstore.sharding.password:${spring.datasource.password:}}") String password,
+                                                         @Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+        if (openInView) {
+            throw new IllegalStateException("Sharding needs spring.jpa.open-in-view=false, "
+                    + "an open session keeps the connection of the first shard a request uses.");
+        }
+        List<DataSource> shards = new ArrayList<>(urls.length);
+        for (int shard = 0; shard < urls.length; shard++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls[shard].trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * Transactions begin before the service selects the shard of the book,
+     * so the connection is only taken from the shard on the first statement.
+     *
+     * @param shardRoutingDataSource
+     * @return
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * Keeps the schema of every shard in step with the first one.
+     *
+     * @param urls
+     * @return
+     */
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(@Value("${bookstore.sharding.urls}") String[] urls) {
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Collections.singletonList(new ShardSchemaIntegrator(urls.length)));
+    }
+}
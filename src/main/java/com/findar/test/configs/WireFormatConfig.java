@@ -0,0 +1,30 @@
+package com.findar.test.configs;
+
+import com.findar.test.web.WireFormats;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    private final WireFormats wireFormats;
+
+    public WireFormatConfig(WireFormats wireFormats) {
+        this.wireFormats = wireFormats;
+    }
+
+    /**
+     * Adds application/cbor for request and response bodies.
+     * It goes last so clients sending Accept: *&#47;* keep getting JSON.
+     *
+     * @param converters
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2CborHttpMessageConverter(wireFormats.getCborMapper()));
+    }
+}
@@ -0,0 +1,49 @@
+package com.findar.test.controller;
+
+import com.findar.test.bestseller.BestSellerBoard;
+import com.findar.test.dtos.BestSellerDto;
+import com.findar.test.enums.Categories;
+import com.findar.test.exceptions.BadRequestException;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Controller for the best-seller leaderboard
+ * Answered from the in-memory {@link BestSellerBoard}, without reading the sales history.
+ */
+@RestController
+@RequestMapping("/api")
+@Api(value = "Best Seller Controller", description = "Best Seller REST Endpoints.")
+public class BestSellerController {
+
+    private final BestSellerBoard bestSellerBoard;
+
+    @Autowired
+    public BestSellerController(BestSellerBoard bestSellerBoard) {
+        this.bestSellerBoard = bestSellerBoard;
+    }
+
+    /**
+     * AC: Top selling books overall or of a category, most sold first
+     *
+     * @param category
+     * @param limit
+     * @return
+     */
+    @ApiOperation(value = "Get the best-selling books")
+    @GetMapping("/best-sellers")
+    public List<BestSellerDto> getBestSellers(@RequestParam(required = false) Categories category,
+                                              @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0 || limit > bestSellerBoard.getCapacity()) {
+            throw new BadRequestException("Limit should be between 1 and " + bestSellerBoard.getCapacity() + ".");
+        }
+        return bestSellerBoard.getBestSellers(category, limit);
+    }
+}
@@ -1,16 +1,28 @@
 package com.findar.test.controller;
 
+import com.findar.test.cache.CachedResponse;
+import com.findar.test.cache.CatalogResponseCache;
 import com.findar.test.dtos.BookDto;
+import com.findar.test.dtos.BookSearchPageDto;
+import com.findar.test.dtos.SellBookDto;
+import com.findar.test.enums.BookField;
 import com.findar.test.enums.Categories;
+import com.findar.test.service.BookSearchService;
 import com.findar.test.service.BookStoreService;
+import com.findar.test.web.WireFormats;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Controller for the bookstore projects
@@ -24,6 +36,9 @@ import java.util.List;
  * 7)sell a list of books
  * 8)get book(s) by category/keywords
  * 9)get number of books sold per category/keyword
+ * Search pages through the matches of a keyword best match first, with limit= and the cursor of the previous page.
+ * Listings take fields=, eg: fields=title,price, to return only those fields and the id of each book.
+ * Bodies are JSON, or CBOR when requested through Accept / Content-Type (see schema/book.cddl).
  */
 @RestController
 @RequestMapping("/api")
@@ -32,9 +47,21 @@ public class BookStoreController {
 
     private final BookStoreService bookStoreService;
 
+    private final CatalogResponseCache catalogResponseCache;
+
+    private final WireFormats wireFormats;
+
+    private final BookSearchService bookSearchService;
+
     @Autowired
-    public BookStoreController(BookStoreService bookStoreService) {
+    public BookStoreController(BookStoreService bookStoreService,
+                               CatalogResponseCache catalogResponseCache,
+                               WireFormats wireFormats,
+                               BookSearchService bookSearchService) {
         this.bookStoreService = bookStoreService;
+        this.catalogResponseCache = catalogResponseCache;
+        this.wireFormats = wireFormats;
+        this.bookSearchService = bookSearchService;
     }
 
     /**
@@ -80,13 +107,59 @@ public class BookStoreController {
 
     /**
      * AC: 3)Get All Books
+     * The serialized listing is cached until the catalog changes.
+     *
+     * @param fields         comma separated fields to return, all fields if absent
+     * @param accept
+     * @param acceptEncoding
+     * @return List<BookDto>
+     */
+    @ApiOperation(value = "Get All Books", response = BookDto.class, responseContainer = "List")
+    @GetMapping(value = "/book-list", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> getAllBooks(@RequestParam(required = false) String fields,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                                      String acceptEncoding) {
+        MediaType mediaType = wireFormats.negotiate(accept);
+        CachedResponse cachedResponse;
+        if (fields == null) {
+            cachedResponse = catalogResponseCache.getAllBooks(mediaType, bookStoreService::getAllBooks);
+        } else {
+            Set<BookField> bookFields = BookField.parse(fields);
+            cachedResponse = catalogResponseCache.getAllBooks(mediaType, bookFields,
+                    () -> bookStoreService.getAllBooks(bookFields));
+        }
+        return toResponseEntity(cachedResponse, mediaType, acceptEncoding);
+    }
+
+    /**
+     * Get all books of a category.
+     * The serialized listing is cached until the catalog changes.
      *
+     * @param categories
+     * @param fields         comma separated fields to return, all fields if absent
+     * @param accept
+     * @param acceptEncoding
      * @return List<BookDto>
      */
-    @ApiOperation(value = "Get All Books")
-    @GetMapping("/book-list")
-    public List<BookDto> getAllBooks() {
-        return bookStoreService.getAllBooks();
+    @ApiOperation(value = "Get All Books of a Category", response = BookDto.class, responseContainer = "List")
+    @GetMapping(value = "/book-list/{categories}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> getBooksByCategories(@PathVariable Categories categories,
+                                                       @RequestParam(required = false) String fields,
+                                                       @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                                               String acceptEncoding) {
+        MediaType mediaType = wireFormats.negotiate(accept);
+        CachedResponse cachedResponse;
+        if (fields == null) {
+            cachedResponse = catalogResponseCache.getBooksByCategories(mediaType, categories,
+                    () -> bookStoreService.getBooksByCategories(categories));
+        } else {
+            Set<BookField> bookFields = BookField.parse(fields);
+            cachedResponse = catalogResponseCache.getBooksByCategories(mediaType, categories, bookFields,
+                    () -> bookStoreService.getBooksByCategories(categories, bookFields));
+        }
+        return toResponseEntity(cachedResponse, mediaType, acceptEncoding);
     }
 
     /**
@@ -112,11 +185,105 @@ public class BookStoreController {
         bookStoreService.updateBook(id, bookDto);
     }
 
-    @ApiOperation(value = "Get Book by Category and Keyword")
+    /**
+     * AC: 8) Get book(s) by category and keyword.
+     *
+     * @param keyword
+     * @param categories
+     * @param fields     comma separated fields to return, all fields if absent
+     * @return List<BookDto>
+     */
+    @ApiOperation(value = "Get Book by Category and Keyword", response = BookDto.class, responseContainer = "List")
     @GetMapping("/books")
-    public List<BookDto> getBookByCategoryKeyWord(@RequestParam String keyword,
-                                                  @RequestParam Categories categories) {
-        return bookStoreService.getBookByCategoriesKeyWord(keyword, categories);
+    public List<?> getBookByCategoryKeyWord(@RequestParam String keyword,
+                                            @RequestParam Categories categories,
+                                            @RequestParam(required = false) String fields) {
+        if (fields == null) {
+            return bookStoreService.getBookByCategoriesKeyWord(keyword, categories);
+        }
+        return bookStoreService.getBookByCategoriesKeyWord(keyword, categories, BookField.parse(fields));
+    }
+
+    /**
+     * AC: 8) Search book(s) by category and keyword, best match first:
+     * exact title, title prefix, title, author, then id.
+     *
+     * @param keyword
+     * @param categories
+     * @param limit      books per page
+     * @param cursor     nextCursor of the previous page, absent for the first page
+     * @return BookSearchPageDto
+     */
+    @ApiOperation(value = "Search Books by Category and Keyword", response = BookSearchPageDto.class)
+    @GetMapping("/books/search")
+    public BookSearchPageDto searchBooks(@RequestParam String keyword,
+                                         @RequestParam Categories categories,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String cursor) {
+        return bookSearchService.search(keyword, categories, limit, cursor);
+    }
+
+    /**
+     * AC: 6) Sell a book.
+     *
+     * @param id
+     * @param quantity
+     */
+    @ApiOperation(value = "Sell a book")
+    @PostMapping("/sell-book/{id}/{quantity}")
+    @ResponseStatus(HttpStatus.OK)
+    public void sellBook(@PathVariable Long id,
+                         @PathVariable int quantity) {
+        bookStoreService.sellBook(id, quantity);
+    }
+
+    /**
+     * AC: 7) Sell a list of books.
+     *
+     * @param sellBookDtos
+     */
+    @ApiOperation(value = "Sell a list of books")
+    @PostMapping("/sell-books")
+    @ResponseStatus(HttpStatus.OK)
+    public void sellBooks(@Validated @RequestBody List<SellBookDto> sellBookDtos) {
+        bookStoreService.sellBooks(sellBookDtos);
+    }
+
+    /**
+     * AC: 9) Get number of books sold per category.
+     *
+     * @return
+     */
+    @ApiOperation(value = "Get number of books sold per category")
+    @GetMapping("/number-of-books-sold")
+    public Map<Categories, Long> getNumberOfBooksSoldPerCategory() {
+        return bookStoreService.getNumberOfBooksSoldPerCategory();
+    }
+
+    /**
+     * AC: 9) Get number of books sold per category and keyword.
+     *
+     * @param keyword
+     * @param categories
+     * @return
+     */
+    @ApiOperation(value = "Get number of books sold by category and keyword")
+    @GetMapping("/number-of-books-sold/books")
+    public long getNumberOfBooksSoldByCategoryKeyWord(@RequestParam String keyword,
+                                                      @RequestParam Categories categories) {
+        return bookStoreService.getNumberOfBooksSoldByCategoriesKeyWord(keyword, categories);
+    }
+
+    //Write the cached bytes as they are, compressed if the client accepts gzip
+    private ResponseEntity<byte[]> toResponseEntity(CachedResponse cachedResponse, MediaType mediaType,
+                                                    String acceptEncoding) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (cachedResponse.getGzipBody() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cachedResponse.getGzipBody());
+        }
+        return builder.body(cachedResponse.getBody());
     }
 
 }
\ No newline at end of file
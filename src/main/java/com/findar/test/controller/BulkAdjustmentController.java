@@ -0,0 +1,43 @@
+package com.findar.test.controller;
+
+import com.findar.test.dtos.BulkAdjustmentDto;
+import com.findar.test.dtos.BulkAdjustmentResultDto;
+import com.findar.test.service.BulkAdjustmentService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controller for the bulk adjustments
+ * Changes the price or the number of copies of many books at once,
+ * eg: 10% off all THRILLER is {"categories": "THRILLER", "field": "price", "operation": "PERCENT", "value": -10}
+ */
+@RestController
+@RequestMapping("/api")
+@Api(value = "Bulk Adjustment Controller", description = "Bulk Adjustment REST Endpoints.")
+public class BulkAdjustmentController {
+
+    private final BulkAdjustmentService bulkAdjustmentService;
+
+    @Autowired
+    public BulkAdjustmentController(BulkAdjustmentService bulkAdjustmentService) {
+        this.bulkAdjustmentService = bulkAdjustmentService;
+    }
+
+    /**
+     * Adjust the price or total count of the books of a category, ids and/or keyword.
+     *
+     * @param bulkAdjustmentDto
+     * @return books matched and adjusted
+     */
+    @ApiOperation(value = "Adjust the price or count of many books")
+    @PostMapping("/books/bulk-adjustment")
+    public BulkAdjustmentResultDto adjust(@Validated @RequestBody BulkAdjustmentDto bulkAdjustmentDto) {
+        return bulkAdjustmentService.adjust(bulkAdjustmentDto);
+    }
+}
@@ -0,0 +1,121 @@
+package com.findar.test.controller;
+
+import com.findar.test.dtos.ExportJobDto;
+import com.findar.test.enums.ExportFormat;
+import com.findar.test.service.CatalogExportService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Controller for the catalog exports
+ * An export writes every book to a CSV or NDJSON file on local disk in the background,
+ * the finished file is then downloaded in full or by byte range.
+ */
+@RestController
+@RequestMapping("/api/exports")
+@Api(value = "Catalog Export Controller", description = "Catalog Export REST Endpoints.")
+public class CatalogExportController {
+
+    private final CatalogExportService catalogExportService;
+
+    @Autowired
+    public CatalogExportController(CatalogExportService catalogExportService) {
+        this.catalogExportService = catalogExportService;
+    }
+
+    /**
+     * Start exporting the catalog.
+     *
+     * @param format
+     * @param compressed
+     * @return the running export
+     */
+    @ApiOperation(value = "Start a catalog export")
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ExportJobDto startExport(@RequestParam(defaultValue = "CSV") ExportFormat format,
+                                    @RequestParam(defaultValue = "false") boolean compressed) {
+        return catalogExportService.startExport(format, compressed);
+    }
+
+    /**
+     * Get the status of an export.
+     *
+     * @param id
+     * @return
+     */
+    @ApiOperation(value = "Get a catalog export")
+    @GetMapping("/{id}")
+    public ExportJobDto getExport(@PathVariable String id) {
+        return catalogExportService.getExport(id);
+    }
+
+    /**
+     * Download the file of a completed export.
+     * The file is sent with FileChannel.transferTo, so it is not read into the heap.
+     * A single byte range can be requested with the Range header.
+     *
+     * @param id
+     * @param range
+     * @param response
+     * @throws IOException
+     */
+    @ApiOperation(value = "Download a catalog export")
+    @GetMapping("/{id}/file")
+    public void downloadExport(@PathVariable String id,
+                               @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                               HttpServletResponse response) throws IOException {
+        ExportJobDto export = catalogExportService.getExport(id);
+        Path file = catalogExportService.getExportFile(id);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            long start = 0;
+            long end = length - 1;
+            if (range != null) {
+                List<HttpRange> ranges;
+                try {
+                    ranges = HttpRange.parseRanges(range);
+                    //Several ranges are not supported, the whole file is sent instead
+                    if (ranges.size() == 1) {
+                        start = ranges.get(0).getRangeStart(length);
+                        end = ranges.get(0).getRangeEnd(length);
+                        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                    }
+                } catch (IllegalArgumentException e) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+            }
+            response.setContentType(export.isCompressed() ? "application/gzip" : export.getFormat().getContentType());
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"");
+            response.setContentLengthLong(end - start + 1);
+
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long transferred = channel.transferTo(position, end - position + 1, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.findar.test.controller;
+
+import com.findar.test.enums.Categories;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.service.BookStoreService;
+import com.findar.test.stream.StockStreamBroker;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Controller for the stock change stream
+ * Replaces polling /api/number-of-books/{id}: clients subscribe once and receive a "stock" event
+ * with the copies available each time they change.
+ */
+@RestController
+@RequestMapping("/api")
+@Api(value = "Stock Stream Controller", description = "Stock Stream REST Endpoints.")
+public class StockStreamController {
+
+    private final BookStoreService bookStoreService;
+
+    private final StockStreamBroker stockStreamBroker;
+
+    @Autowired
+    public StockStreamController(BookStoreService bookStoreService,
+                                 StockStreamBroker stockStreamBroker) {
+        this.bookStoreService = bookStoreService;
+        this.stockStreamBroker = stockStreamBroker;
+    }
+
+    /**
+     * Subscribe to the stock changes of books and/or categories.
+     * The current stock of the requested ids is sent first.
+     *
+     * @param ids
+     * @param categories
+     * @return
+     */
+    @ApiOperation(value = "Subscribe to stock changes")
+    @GetMapping(value = "/stock-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam(required = false) List<Long> ids,
+                                @RequestParam(required = false) List<Categories> categories) {
+        List<Long> followedIds = ids == null ? Collections.emptyList() : ids;
+        List<Categories> followedCategories = categories == null ? Collections.emptyList() : categories;
+        if (followedIds.isEmpty() && followedCategories.isEmpty()) {
+            throw new BadRequestException("Subscribe to at least one id or category.");
+        }
+        return stockStreamBroker.subscribe(followedIds, followedCategories, bookStoreService::getNumberOfBooksByIds);
+    }
+}
@@ -0,0 +1,51 @@
+package com.findar.test.controller;
+
+import com.findar.test.dtos.SuggestionDto;
+import com.findar.test.enums.Categories;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.suggest.SuggestionIndex;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Controller for the type-ahead of the search box
+ * Answered from memory by {@link SuggestionIndex}, without querying the book table.
+ */
+@RestController
+@RequestMapping("/api")
+@Api(value = "Suggestion Controller", description = "Suggestion REST Endpoints.")
+public class SuggestionController {
+
+    private final SuggestionIndex suggestionIndex;
+
+    @Autowired
+    public SuggestionController(SuggestionIndex suggestionIndex) {
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    /**
+     * AC: Books with a word of the title or author starting with the prefix, most sold first
+     *
+     * @param prefix
+     * @param category
+     * @param limit
+     * @return List<SuggestionDto>
+     */
+    @ApiOperation(value = "Suggest books for a prefix", response = SuggestionDto.class, responseContainer = "List")
+    @GetMapping("/suggest")
+    public List<SuggestionDto> suggest(@RequestParam String prefix,
+                                       @RequestParam(required = false) Categories category,
+                                       @RequestParam(required = false) Integer limit) {
+        if (limit != null && limit <= 0) {
+            throw new BadRequestException("Limit should be positive value.");
+        }
+        return suggestionIndex.suggest(prefix, category, limit == null ? suggestionIndex.getMaxResults() : limit);
+    }
+}
@@ -0,0 +1,38 @@
+package com.findar.test.dtos;
+
+import com.findar.test.enums.Categories;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BestSellerDto {
+    @ApiModelProperty(value = "Book Unique Id")
+    private Long id;
+
+    @ApiModelProperty(value = "Title of the book")
+    private String title;
+
+    @ApiModelProperty(value = "Author of the book")
+    private String author;
+
+    @ApiModelProperty(value = "Category of the book")
+    private Categories categories;
+
+    /**
+     * Estimated copies sold, never less than the copies actually sold
+     */
+    @ApiModelProperty(value = "Estimated copies sold")
+    private long sold;
+
+    /**
+     * Most the estimate can exceed the copies actually sold by
+     */
+    @ApiModelProperty(value = "Most the estimate of copies sold can be over by")
+    private long maxOverestimate;
+}
@@ -54,5 +54,12 @@ public class BookDto {
     @Min(value = 0, message = "Total Count should be positive value.")
     private int totalCount;
 
+    /**
+     * Version of the book when it was read
+     * An update giving a version is rejected if the book changed since.
+     */
+    @ApiModelProperty(value = "Version of the book, give it back on update to reject the update if the book changed since")
+    private Long version;
+
 
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.findar.test.dtos;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSearchPageDto {
+    /**
+     * Books of the page, best match first
+     */
+    @ApiModelProperty(value = "Books of the page, best match first")
+    private List<BookDto> books;
+
+    /**
+     * Cursor of the next page, null on the last page
+     */
+    @ApiModelProperty(value = "Cursor of the next page, null on the last page")
+    private String nextCursor;
+}
@@ -0,0 +1,54 @@
+package com.findar.test.dtos;
+
+import com.findar.test.enums.AdjustmentOperation;
+import com.findar.test.enums.BookField;
+import com.findar.test.enums.Categories;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkAdjustmentDto {
+    /**
+     * Books of this category are adjusted
+     */
+    @ApiModelProperty(value = "Category of the books to adjust")
+    private Categories categories;
+
+    /**
+     * Books with these ids are adjusted
+     */
+    @ApiModelProperty(value = "Ids of the books to adjust")
+    private List<Long> ids;
+
+    /**
+     * Books with the keyword in their id, title or author are adjusted
+     */
+    @ApiModelProperty(value = "Keyword in the id, title or author of the books to adjust")
+    private String keyword;
+
+    /**
+     * price or totalCount
+     */
+    @ApiModelProperty(value = "Field to adjust, price or totalCount")
+    @NotNull
+    private BookField field;
+
+    @ApiModelProperty(value = "Operation on the field: SET, PERCENT or DELTA")
+    @NotNull
+    private AdjustmentOperation operation;
+
+    /**
+     * New value, percent or delta, depending on the operation
+     */
+    @ApiModelProperty(value = "New value, percent or delta of the field")
+    private double value;
+}
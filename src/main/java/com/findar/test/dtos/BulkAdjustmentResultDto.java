@@ -0,0 +1,25 @@
+package com.findar.test.dtos;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkAdjustmentResultDto {
+    /**
+     * Books selected by the adjustment
+     */
+    @ApiModelProperty(value = "Books selected by the adjustment")
+    private long matched;
+
+    /**
+     * Books changed, the others would have had a negative price or count
+     */
+    @ApiModelProperty(value = "Books changed, books that would become negative are left unchanged")
+    private long adjusted;
+}
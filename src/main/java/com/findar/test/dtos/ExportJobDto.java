@@ -0,0 +1,48 @@
+package com.findar.test.dtos;
+
+import com.findar.test.enums.ExportFormat;
+import com.findar.test.enums.ExportStatus;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExportJobDto {
+    /**
+     * identifier of the export, also the name of its file
+     */
+    @ApiModelProperty(value = "Export Unique Id")
+    private String id;
+
+    @ApiModelProperty(value = "Format of the exported file")
+    private ExportFormat format;
+
+    @ApiModelProperty(value = "Whether the exported file is gzip-compressed")
+    private boolean compressed;
+
+    @ApiModelProperty(value = "Status of the export")
+    private ExportStatus status;
+
+    /**
+     * number of books written so far
+     */
+    @ApiModelProperty(value = "Books written so far")
+    private long rows;
+
+    /**
+     * size of the finished file
+     */
+    @ApiModelProperty(value = "Size of the exported file in bytes")
+    private long size;
+
+    /**
+     * reason of the failure, if the export failed
+     */
+    @ApiModelProperty(value = "Reason of the failure")
+    private String error;
+}
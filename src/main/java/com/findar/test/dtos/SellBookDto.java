@@ -0,0 +1,30 @@
+package com.findar.test.dtos;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SellBookDto {
+    /**
+     * id of the book to sell
+     */
+    @ApiModelProperty(value = "Book Unique Id")
+    @NotNull
+    private Long id;
+
+    /**
+     * copies of the book to sell
+     */
+    @ApiModelProperty(value = "Copies of book to sell")
+    @Min(value = 1, message = "Quantity should be positive value.")
+    private int quantity;
+}
@@ -0,0 +1,32 @@
+package com.findar.test.dtos;
+
+import com.findar.test.enums.Categories;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockChangeDto {
+    @ApiModelProperty(value = "Book Unique Id")
+    private Long id;
+
+    @ApiModelProperty(value = "Category of the book")
+    private Categories categories;
+
+    /**
+     * Amount of book available
+     */
+    @ApiModelProperty(value = "Copies of book available on the store")
+    private int totalCount;
+
+    /**
+     * Orders the changes of a book, a higher sequence is a newer change
+     */
+    @ApiModelProperty(value = "Number of the change, higher for a newer change of the book")
+    private long sequence;
+}
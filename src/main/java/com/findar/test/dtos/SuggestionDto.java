@@ -0,0 +1,26 @@
+package com.findar.test.dtos;
+
+import com.findar.test.enums.Categories;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SuggestionDto {
+    @ApiModelProperty(value = "Book Unique Id")
+    private Long id;
+
+    @ApiModelProperty(value = "Title of the book")
+    private String title;
+
+    @ApiModelProperty(value = "Author of the book")
+    private String author;
+
+    @ApiModelProperty(value = "Category of the book")
+    private Categories categories;
+}
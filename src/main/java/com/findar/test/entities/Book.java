@@ -6,8 +6,10 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
@@ -56,4 +58,17 @@ public class Book {
     @Min(value = 0, message = "Total Count should be positive value.")
     private int totalCount;
 
+    /**
+     * Version of the row, incremented on every change of the book
+     */
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    /**
+     * Sales journal sequence up to which, excluded, the sales of the book are applied to the total count
+     */
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long salesAppliedUpTo;
+
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.findar.test.enums;
+
+/**
+ * How a bulk adjustment changes the adjusted field of each book
+ */
+public enum AdjustmentOperation {
+    /**
+     * Field becomes the value
+     */
+    SET,
+    /**
+     * Field changes by value percent, eg: -10 for 10% off
+     */
+    PERCENT,
+    /**
+     * Value is added to the field
+     */
+    DELTA
+}
@@ -0,0 +1,55 @@
+package com.findar.test.enums;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.findar.test.exceptions.BadRequestException;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Fields of a book that a listing can be narrowed to with fields=, named as in {@link com.findar.test.dtos.BookDto}.
+ */
+public enum BookField {
+    ID("id"),
+    TITLE("title"),
+    AUTHOR("author"),
+    CATEGORIES("categories"),
+    PRICE("price"),
+    TOTAL_COUNT("totalCount"),
+    VERSION("version");
+
+    private final String property;
+
+    BookField(String property) {
+        this.property = property;
+    }
+
+    @JsonValue
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Parses a comma separated list of field names, eg: title,price
+     * The id is always part of the result, listings are ordered by it.
+     *
+     * @param fields
+     * @return requested fields
+     */
+    public static Set<BookField> parse(String fields) {
+        Set<BookField> parsed = EnumSet.of(ID);
+        for (String name : fields.split(",")) {
+            String property = name.trim();
+            if (property.isEmpty()) {
+                continue;
+            }
+            parsed.add(EnumSet.allOf(BookField.class).stream()
+                    .filter(field -> field.property.equals(property))
+                    .findFirst()
+                    .orElseThrow(() -> new BadRequestException("Unknown field " + property + ", fields are "
+                            + EnumSet.allOf(BookField.class).stream().map(BookField::getProperty).collect(Collectors.joining(",")) + ".")));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,7 @@
+package com.findar.test.enums;
+
+public enum ExportStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,25 @@
+package com.findar.test.events;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Published by the service layer whenever books are created or their data changes.
+ */
+@Getter
+public class CatalogChangedEvent {
+    /**
+     * Ids of the books that changed.
+     */
+    private final Collection<Long> bookIds;
+
+    public CatalogChangedEvent(Collection<Long> bookIds) {
+        this.bookIds = Collections.unmodifiableCollection(bookIds);
+    }
+
+    public static CatalogChangedEvent of(Long bookId) {
+        return new CatalogChangedEvent(Collections.singleton(bookId));
+    }
+}
@@ -0,0 +1,23 @@
+package com.findar.test.events;
+
+import com.findar.test.sales.SaleRecord;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Published by the sales ledger once a batch of sales is applied to the book table.
+ * Batches are published one after the other, in journal sequence order.
+ */
+@Getter
+public class SalesAppliedEvent {
+    /**
+     * Sales of the batch, in sequence order.
+     */
+    private final List<SaleRecord> sales;
+
+    public SalesAppliedEvent(List<SaleRecord> sales) {
+        this.sales = Collections.unmodifiableList(sales);
+    }
+}
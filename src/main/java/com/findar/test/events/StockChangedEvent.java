@@ -0,0 +1,27 @@
+package com.findar.test.events;
+
+import com.findar.test.enums.Categories;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published whenever the number of copies of a book available for sale changes.
+ * Events can be delivered out of order, the sequence tells which one is the latest.
+ */
+@Getter
+@AllArgsConstructor
+public class StockChangedEvent {
+    private final Long bookId;
+
+    private final Categories categories;
+
+    /**
+     * copies available for sale after the change
+     */
+    private final int available;
+
+    /**
+     * number of the stock read in {@link com.findar.test.sales.SalesLedger}, higher for later reads of the same book
+     */
+    private final long sequence;
+}
@@ -0,0 +1,7 @@
+package com.findar.test.exceptions;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.findar.test.exceptions;
+
+public class ExportNotFoundException extends RuntimeException {
+    public ExportNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package com.findar.test.logging;
+
+/**
+ * Holds the per-request decision whether SQL statements should be logged.
+ * The decision is taken once per request by {@link SqlLogSamplingFilter} and read
+ * by {@link SqlSamplingStatementInspector} on every statement Hibernate prepares.
+ */
+public final class SqlLogSampling {
+
+    private static final ThreadLocal<Boolean> SAMPLED = new ThreadLocal<>();
+
+    private SqlLogSampling() {
+    }
+
+    static void begin(boolean sampled) {
+        if (sampled) {
+            SAMPLED.set(Boolean.TRUE);
+        }
+    }
+
+    static void end() {
+        SAMPLED.remove();
+    }
+
+    /**
+     * @return true if the request bound to the current thread was picked for SQL logging
+     */
+    public static boolean isSampled() {
+        return SAMPLED.get() != null;
+    }
+}
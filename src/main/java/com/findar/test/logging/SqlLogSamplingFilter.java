@@ -0,0 +1,44 @@
+package com.findar.test.logging;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tags every request with a short request id in the MDC and decides, with probability
+ * {@code bookstore.logging.sql-sample-rate}, whether the SQL it issues is logged.
+ */
+@Component
+public class SqlLogSamplingFilter extends OncePerRequestFilter {
+
+    static final String REQUEST_ID = "requestId";
+
+    private final double sqlSampleRate;
+
+    public SqlLogSamplingFilter(@Value("${bookstore.logging.sql-sample-rate:0}") double sqlSampleRate) {
+        this.sqlSampleRate = sqlSampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        MDC.put(REQUEST_ID, Long.toHexString(random.nextLong()));
+        SqlLogSampling.begin(sqlSampleRate > 0 && random.nextDouble() < sqlSampleRate);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlLogSampling.end();
+            MDC.remove(REQUEST_ID);
+        }
+    }
+}
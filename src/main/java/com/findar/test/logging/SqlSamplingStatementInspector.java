@@ -0,0 +1,22 @@
+package com.findar.test.logging;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replacement for {@code show-sql}: logs the statements of sampled requests only,
+ * through the asynchronous appender instead of synchronously on stdout.
+ */
+public class SqlSamplingStatementInspector implements StatementInspector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("bookstore.sql");
+
+    @Override
+    public String inspect(String sql) {
+        if (SqlLogSampling.isSampled()) {
+            LOGGER.info("sql={}", sql);
+        }
+        return sql;
+    }
+}
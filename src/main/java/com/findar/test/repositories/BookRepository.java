@@ -1,17 +1,68 @@
 package com.findar.test.repositories;
 
 import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import javax.transaction.Transactional;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
 
     @Query(value = "Select * from book b where " +
             "(b.title like %?1% OR CAST(b.id as CHAR) like %?1% OR LOWER(b.author) like %?1%) " +
-            "AND b.categories=?2",
+            "AND b.categories=?2 order by b.id",
             nativeQuery = true)
     List<Book> findAllBookByCategoriesAndKeyword(String keyword, int categories);
 
+    List<Book> findAllByCategoriesOrderById(Categories categories);
+
+    @Modifying
+    @Transactional
+    @Query("update Book b set b.totalCount = b.totalCount + ?2, b.version = b.version + 1 where b.id = ?1")
+    int incrementTotalCount(Long id, int quantity);
+
+    /**
+     * Applies the sales of the book journaled from appliedFrom up to appliedUpTo, excluded.
+     * The position is moved in the same statement, and only if it is still appliedFrom.
+     * The book is left unchanged if it has fewer copies than the quantity.
+     *
+     * @param id
+     * @param quantity    copies sold from appliedFrom on
+     * @param appliedFrom salesAppliedUpTo of the book when the quantity was computed
+     * @param appliedUpTo new salesAppliedUpTo of the book
+     * @return 1 if the book was updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update Book b set b.totalCount = b.totalCount - ?2, b.version = b.version + 1, b.salesAppliedUpTo = ?4 "
+            + "where b.id = ?1 and b.salesAppliedUpTo = ?3 and b.totalCount >= ?2")
+    int decrementTotalCount(Long id, int quantity, long appliedFrom, long appliedUpTo);
+
+    /**
+     * Moves the applied position of the book past sales that cannot be applied, without changing its count.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Book b set b.salesAppliedUpTo = ?3 where b.id = ?1 and b.salesAppliedUpTo = ?2")
+    int skipSales(Long id, long appliedFrom, long appliedUpTo);
+
+    @Query("select b.salesAppliedUpTo from Book b where b.id = ?1")
+    Optional<Long> findSalesAppliedUpTo(Long id);
+
+    @Query("select coalesce(max(b.salesAppliedUpTo), 0) from Book b")
+    long findMaxSalesAppliedUpTo();
+
+    @Query("select b.id as id, b.version as version from Book b where b.id in ?1")
+    List<BookVersion> findVersionsByIdIn(Collection<Long> ids);
+
+    @Query("select b.id from Book b where b.id > ?1 order by b.id")
+    List<Long> findIdsAfter(Long id, Pageable pageable);
+
 }
\ No newline at end of file
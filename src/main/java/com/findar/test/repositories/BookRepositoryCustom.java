@@ -0,0 +1,51 @@
+package com.findar.test.repositories;
+
+import com.findar.test.enums.AdjustmentOperation;
+import com.findar.test.enums.BookField;
+import com.findar.test.enums.Categories;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Listings of books narrowed to some fields. Only the columns of the fields are selected
+ * and the rows are read as plain values, no entity is loaded into the persistence context.
+ * Each row maps field names to values, in the order of {@link BookField}, rows are ordered by id.
+ * <p>
+ * Set-based adjustments of the price or count of many books, without loading them.
+ */
+public interface BookRepositoryCustom {
+
+    List<Map<String, Object>> findAllFields(Set<BookField> fields);
+
+    List<Map<String, Object>> findFieldsByCategories(Set<BookField> fields, Categories categories);
+
+    List<Map<String, Object>> findFieldsByCategoriesAndKeyword(Set<BookField> fields, String keyword, Categories categories);
+
+    /**
+     * Ids of the books matching every given criterion, null criteria are ignored
+     *
+     * @param categories
+     * @param ids
+     * @param keyword    lower case, matched as in findAllBookByCategoriesAndKeyword
+     * @param afterId    only ids greater than this one, null for the first page
+     * @param limit
+     * @return ids in order
+     */
+    List<Long> findIdsMatching(Categories categories, Collection<Long> ids, String keyword, Long afterId, int limit);
+
+    /**
+     * Adjusts the price or total count of the books in one update statement and increments their version.
+     * Books whose field would fall below the reserved value are left unchanged.
+     *
+     * @param ids
+     * @param field     price or totalCount
+     * @param operation
+     * @param value
+     * @param reserved  lowest value the field may take, eg: copies sold and not yet applied to the total count
+     * @return number of books changed
+     */
+    int adjust(Collection<Long> ids, BookField field, AdjustmentOperation operation, double value, int reserved);
+}
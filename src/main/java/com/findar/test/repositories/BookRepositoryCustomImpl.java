@@ -0,0 +1,149 @@
+package com.findar.test.repositories;
+
+import com.findar.test.entities.Book;
+import com.findar.test.enums.AdjustmentOperation;
+import com.findar.test.enums.BookField;
+import com.findar.test.enums.Categories;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findAllFields(Set<BookField> fields) {
+        return findFields(fields, null, null);
+    }
+
+    @Override
+    public List<Map<String, Object>> findFieldsByCategories(Set<BookField> fields, Categories categories) {
+        return findFields(fields, categories, null);
+    }
+
+    /**
+     * Same matching as {@link BookRepository#findAllBookByCategoriesAndKeyword(String, int)}
+     *
+     * @param fields
+     * @param keyword lower case
+     * @param categories
+     * @return
+     */
+    @Override
+    public List<Map<String, Object>> findFieldsByCategoriesAndKeyword(Set<BookField> fields, String keyword,
+                                                                      Categories categories) {
+        return findFields(fields, categories, keyword);
+    }
+
+    @Override
+    public List<Long> findIdsMatching(Categories categories, Collection<Long> ids, String keyword, Long afterId, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Book> book = query.from(Book.class);
+        List<Predicate> predicates = matching(criteriaBuilder, book, categories, keyword);
+        if (ids != null) {
+            predicates.add(book.get("id").in(ids));
+        }
+        if (afterId != null) {
+            predicates.add(criteriaBuilder.greaterThan(book.get("id"), afterId));
+        }
+        query.select(book.get("id"))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(criteriaBuilder.asc(book.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional
+    public int adjust(Collection<Long> ids, BookField field, AdjustmentOperation operation, double value, int reserved) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Book> update = criteriaBuilder.createCriteriaUpdate(Book.class);
+        Root<Book> book = update.from(Book.class);
+        Expression<? extends Number> adjusted;
+        if (field == BookField.PRICE) {
+            Path<Float> price = book.get("price");
+            Expression<Float> newPrice = adjusted(criteriaBuilder, price, Float.class, operation, (float) value);
+            update.set(price, newPrice);
+            adjusted = newPrice;
+        } else if (field == BookField.TOTAL_COUNT) {
+            Path<Integer> totalCount = book.get("totalCount");
+            //A percent of a count is rounded down, so stock is never overstated
+            Expression<Integer> newTotalCount = operation == AdjustmentOperation.PERCENT
+                    ? criteriaBuilder.function("floor", Integer.class, criteriaBuilder.prod(totalCount, 1 + value / 100))
+                    : adjusted(criteriaBuilder, totalCount, Integer.class, operation, (int) value);
+            update.set(totalCount, newTotalCount);
+            adjusted = newTotalCount;
+        } else {
+            throw new IllegalArgumentException("Only price and totalCount can be adjusted.");
+        }
+        Path<Long> version = book.get("version");
+        update.set(version, criteriaBuilder.sum(version, 1L));
+        update.where(book.get("id").in(ids), criteriaBuilder.ge(adjusted, reserved));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    private static <N extends Number> Expression<N> adjusted(CriteriaBuilder criteriaBuilder, Path<N> path, Class<N> type,
+                                                             AdjustmentOperation operation, N value) {
+        switch (operation) {
+            case SET:
+                return criteriaBuilder.literal(value);
+            case PERCENT:
+                return criteriaBuilder.prod(path, criteriaBuilder.literal(value.doubleValue() / 100 + 1)).as(type);
+            default:
+                return criteriaBuilder.sum(path, value);
+        }
+    }
+
+    private List<Map<String, Object>> findFields(Set<BookField> fields, Categories categories, String keyword) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+        query.multiselect(fields.stream()
+                .map(field -> book.get(field.getProperty()).alias(field.getProperty()))
+                .collect(Collectors.toList()));
+        query.where(matching(criteriaBuilder, book, categories, keyword).toArray(new Predicate[0]));
+        query.orderBy(criteriaBuilder.asc(book.get("id")));
+
+        return entityManager.createQuery(query).getResultList().stream()
+                .map(tuple -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    fields.forEach(field -> row.put(field.getProperty(), tuple.get(field.getProperty())));
+                    return row;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static List<Predicate> matching(CriteriaBuilder criteriaBuilder, Root<Book> book,
+                                            Categories categories, String keyword) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (categories != null) {
+            predicates.add(criteriaBuilder.equal(book.get("categories"), categories));
+        }
+        if (keyword != null) {
+            String pattern = "%" + keyword + "%";
+            predicates.add(criteriaBuilder.or(
+                    criteriaBuilder.like(criteriaBuilder.lower(book.get("title")), pattern),
+                    criteriaBuilder.like(book.get("id").as(String.class), pattern),
+                    criteriaBuilder.like(criteriaBuilder.lower(book.get("author")), pattern)));
+        }
+        return predicates;
+    }
+}
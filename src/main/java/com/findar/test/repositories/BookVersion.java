@@ -0,0 +1,10 @@
+package com.findar.test.repositories;
+
+/**
+ * Projection of the id and row version of a book.
+ */
+public interface BookVersion {
+    Long getId();
+
+    long getVersion();
+}
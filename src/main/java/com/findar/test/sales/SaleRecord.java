@@ -0,0 +1,35 @@
+package com.findar.test.sales;
+
+import com.findar.test.enums.Categories;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * One sale as stored in the {@link SalesJournal}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SaleRecord {
+    /**
+     * Position of the record in the journal, starting at 0.
+     */
+    private final long sequence;
+
+    private final long bookId;
+
+    private final int quantity;
+
+    /**
+     * unit price of the book when it was sold
+     */
+    private final float price;
+
+    private final Categories categories;
+
+    /**
+     * epoch millis of the sale
+     */
+    private final long timestamp;
+}
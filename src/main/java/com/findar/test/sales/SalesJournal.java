@@ -0,0 +1,426 @@
+package com.findar.test.sales;
+
+import com.findar.test.enums.Categories;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only journal of sales made of memory-mapped segment files holding fixed-size records:
+ * <pre>
+ * bookId(8) timestamp(8) price(4) quantity(4) category(4) crc32(4)
+ * </pre>
+ * Appends only copy the record into the mapped segment. A single flusher thread forces the
+ * segment to disk and releases every append made up to that point at once (group commit),
+ * so the number of fsyncs does not grow with the number of concurrent sales.
+ * <p>
+ * Records that are durable but not yet applied to the book table are handed out in sequence
+ * order by {@link #drainDurable(int)}; {@link #markApplied(long)} persists how far they were applied.
+ * Reading and applying is expected to be done by a single thread.
+ */
+public class SalesJournal implements Closeable {
+
+    static final int RECORD_SIZE = 32;
+    private static final int CRC_OFFSET = 28;
+    private static final String SEGMENT_PREFIX = "sales-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "applied.checkpoint";
+    //appliedSequence(8) recordsPerSegment(4)
+    private static final int CHECKPOINT_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long groupCommitWindowNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final Queue<SaleRecord> unapplied = new ConcurrentLinkedQueue<>();
+
+    private final MappedByteBuffer checkpoint;
+    private final Thread flusher;
+
+    private MappedByteBuffer segment;
+    private long segmentIndex = -1;
+    private long nextSequence;
+    private volatile long durableSequence;
+    private UncheckedIOException flushFailure;
+    private boolean closed;
+
+    private SalesJournal(Path directory, int recordsPerSegment, long groupCommitWindowMicros,
+                         Consumer<SaleRecord> replay) throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.groupCommitWindowNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitWindowMicros);
+
+        if (recordsPerSegment <= 0 || recordsPerSegment > Integer.MAX_VALUE / RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid number of records per segment: " + recordsPerSegment);
+        }
+        Files.createDirectories(directory);
+        checkpoint = map(directory.resolve(CHECKPOINT_FILE), CHECKPOINT_SIZE);
+        checkRecordsPerSegment();
+        replay(checkpoint.getLong(0), replay);
+
+        flusher = new Thread(this::flushLoop, "sales-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Opens the journal in the directory, creating it if needed, and replays every record in it.
+     *
+     * @param directory               directory holding the segment files
+     * @param recordsPerSegment       number of records in one segment file
+     * @param groupCommitWindowMicros time the flusher waits for more appends before forcing, 0 to force right away
+     * @param replay                  called with every valid record, in sequence order
+     * @return the opened journal, positioned after the last valid record
+     * @throws IOException
+     */
+    public static SalesJournal open(Path directory, int recordsPerSegment, long groupCommitWindowMicros,
+                                    Consumer<SaleRecord> replay) throws IOException {
+        return new SalesJournal(directory, recordsPerSegment, groupCommitWindowMicros, replay);
+    }
+
+    /**
+     * Copies a sale into the journal. The sale is durable once {@link #awaitDurable(long)} returns for its sequence.
+     *
+     * @param bookId
+     * @param quantity
+     * @param price
+     * @param categories
+     * @return the record with its sequence
+     */
+    public SaleRecord append(long bookId, int quantity, float price, Categories categories) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Sales journal is closed.");
+            }
+            long index = nextSequence / recordsPerSegment;
+            if (index != segmentIndex) {
+                roll(index);
+            }
+            SaleRecord record = new SaleRecord(nextSequence, bookId, quantity, price, categories,
+                    System.currentTimeMillis());
+            write(record, (int) (nextSequence % recordsPerSegment));
+            unapplied.add(record);
+            nextSequence++;
+            appended.signal();
+            return record;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence is forced to disk.
+     *
+     * @param sequence
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void awaitDurable(long sequence) throws InterruptedIOException {
+        lock.lock();
+        try {
+            while (durableSequence <= sequence) {
+                if (flushFailure != null) {
+                    throw flushFailure;
+                }
+                flushed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the sales journal.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return sequence of the first record that is not durable yet
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Takes durable records not yet applied to the book table, in sequence order.
+     *
+     * @param maxRecords
+     * @return up to maxRecords records, empty if none are waiting
+     */
+    public List<SaleRecord> drainDurable(int maxRecords) {
+        long durableUpTo = durableSequence;
+        List<SaleRecord> records = new ArrayList<>();
+        while (records.size() < maxRecords) {
+            SaleRecord record = unapplied.peek();
+            if (record == null || record.getSequence() >= durableUpTo) {
+                break;
+            }
+            records.add(unapplied.poll());
+        }
+        return records;
+    }
+
+    /**
+     * @return records that are not applied yet, in sequence order
+     */
+    public List<SaleRecord> unappliedRecords() {
+        return new ArrayList<>(unapplied);
+    }
+
+    /**
+     * Reads the durable records from the given sequence on, in sequence order, from the segment files.
+     * Can be called while sales are appended, records appended meanwhile may be left out.
+     *
+     * @param fromSequence sequence of the first record to read
+     * @param consumer     called with every record read
+     * @throws IOException
+     */
+    public void forEachDurable(long fromSequence, Consumer<SaleRecord> consumer) throws IOException {
+        long upTo = durableSequence;
+        CRC32 readCrc = new CRC32();
+        for (long sequence = Math.max(fromSequence, 0); sequence < upTo; ) {
+            long index = sequence / recordsPerSegment;
+            ByteBuffer source;
+            try (FileChannel channel = FileChannel.open(directory.resolve(segmentName(index)), READ)) {
+                source = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) recordsPerSegment * RECORD_SIZE);
+            }
+            for (; sequence < upTo && sequence / recordsPerSegment == index; sequence++) {
+                SaleRecord record = read(source, readCrc, sequence, (int) (sequence % recordsPerSegment));
+                if (record == null) {
+                    throw new IOException("Sales journal record " + sequence + " is unreadable.");
+                }
+                consumer.accept(record);
+            }
+        }
+    }
+
+    /**
+     * Persists that every record before the given sequence was applied to the book table,
+     * so they are not handed out again after a restart.
+     *
+     * @param sequence sequence of the first record not applied
+     */
+    public void markApplied(long sequence) {
+        checkpoint.putLong(0, sequence);
+        checkpoint.force();
+    }
+
+    /**
+     * Stops accepting appends, forces what was appended so far and stops the flusher.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Sequences are placed in segments by the number of records per segment, another number would misplace every record
+    private void checkRecordsPerSegment() throws IOException {
+        int stored = checkpoint.getInt(Long.BYTES);
+        if (stored == 0) {
+            //A new journal, or one whose checkpoint predates the stored number: the segment files tell
+            try (Stream<Path> files = Files.list(directory)) {
+                Optional<Path> segmentFile = files
+                        .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                        .findFirst();
+                if (segmentFile.isPresent()) {
+                    stored = (int) (Files.size(segmentFile.get()) / RECORD_SIZE);
+                }
+            }
+        }
+        if (stored != 0 && stored != recordsPerSegment) {
+            throw new IllegalStateException("Sales journal in " + directory + " has " + stored + " records per segment, not "
+                    + recordsPerSegment + ". Set bookstore.sales-journal.records-per-segment back to " + stored + ".");
+        }
+        checkpoint.putInt(Long.BYTES, recordsPerSegment);
+        checkpoint.force();
+    }
+
+    private void replay(long appliedSequence, Consumer<SaleRecord> replay) throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        long sequence = 0;
+        boolean endReached = false;
+        for (Path file : segments) {
+            //Segments after a torn record or a gap were never acknowledged
+            if (endReached || segmentIndex(file) != sequence / recordsPerSegment) {
+                Files.delete(file);
+                continue;
+            }
+            segment = map(file, (long) recordsPerSegment * RECORD_SIZE);
+            segmentIndex = sequence / recordsPerSegment;
+            int slot = 0;
+            for (; slot < recordsPerSegment; slot++) {
+                SaleRecord record = read(segment, crc, sequence, slot);
+                if (record == null) {
+                    break;
+                }
+                replay.accept(record);
+                if (sequence >= appliedSequence) {
+                    unapplied.add(record);
+                }
+                sequence++;
+            }
+            if (slot < recordsPerSegment) {
+                endReached = true;
+                //Clear what is left of a torn write so it cannot be read back later
+                for (int offset = slot * RECORD_SIZE; offset < recordsPerSegment * RECORD_SIZE; offset += Long.BYTES) {
+                    segment.putLong(offset, 0L);
+                }
+                segment.force();
+            }
+        }
+        nextSequence = sequence;
+        durableSequence = sequence;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer toForce;
+            long target;
+            lock.lock();
+            try {
+                while (!closed && durableSequence == nextSequence) {
+                    appended.awaitUninterruptibly();
+                }
+                if (durableSequence == nextSequence) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (groupCommitWindowNanos > 0) {
+                LockSupport.parkNanos(groupCommitWindowNanos);
+            }
+            lock.lock();
+            try {
+                toForce = segment;
+                target = nextSequence;
+            } finally {
+                lock.unlock();
+            }
+            UncheckedIOException failure = null;
+            try {
+                toForce.force();
+            } catch (UncheckedIOException e) {
+                failure = e;
+            }
+            lock.lock();
+            try {
+                if (failure != null) {
+                    flushFailure = failure;
+                    closed = true;
+                } else {
+                    durableSequence = target;
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (failure != null) {
+                return;
+            }
+        }
+    }
+
+    //Called with the lock held. Earlier records must be durable before the next segment is used.
+    private void roll(long index) {
+        try {
+            if (segment != null) {
+                segment.force();
+            }
+            segment = map(directory.resolve(segmentName(index)), (long) recordsPerSegment * RECORD_SIZE);
+            segmentIndex = index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create sales journal segment " + index, e);
+        }
+    }
+
+    private void write(SaleRecord record, int slot) {
+        scratch.clear();
+        scratch.putLong(record.getBookId())
+                .putLong(record.getTimestamp())
+                .putFloat(record.getPrice())
+                .putInt(record.getQuantity())
+                .putInt(record.getCategories() == null ? -1 : record.getCategories().getValue());
+        crc.reset();
+        crc.update(scratch.array(), 0, CRC_OFFSET);
+        scratch.putInt((int) crc.getValue());
+        scratch.flip();
+        ByteBuffer target = segment.duplicate();
+        target.position(slot * RECORD_SIZE);
+        target.put(scratch);
+    }
+
+    private static SaleRecord read(ByteBuffer segment, CRC32 crc, long sequence, int slot) {
+        byte[] bytes = new byte[RECORD_SIZE];
+        ByteBuffer source = segment.duplicate();
+        source.position(slot * RECORD_SIZE);
+        source.get(bytes);
+        crc.reset();
+        crc.update(bytes, 0, CRC_OFFSET);
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        if (record.getInt(CRC_OFFSET) != (int) crc.getValue()) {
+            return null;
+        }
+        return new SaleRecord(sequence, record.getLong(0), record.getInt(20), record.getFloat(16),
+                Categories.valueOf(record.getInt(24)), record.getLong(8));
+    }
+
+    private static String segmentName(long index) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    private static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        //The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.findar.test.sales;
+
+import com.findar.test.cache.HotBookCache;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.CatalogChangedEvent;
+import com.findar.test.events.SalesAppliedEvent;
+import com.findar.test.events.StockChangedEvent;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.exceptions.BookNotFoundException;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Sell path of the bookstore. A sale is acknowledged once it is durable in the {@link SalesJournal};
+ * a background thread applies acknowledged sales to the book table afterwards.
+ * <p>
+ * Until a sale is applied its quantity is kept as pending for the book, so the stock available
+ * for sale is the total count in the book table minus the pending quantity. Sales of the same book
+ * are serialized by a striped lock so the stock check and the append cannot interleave.
+ * <p>
+ * On startup the journal is replayed to rebuild the sold counters and the pending quantities;
+ * sales not applied before a shutdown are applied then. Each book keeps the journal position its
+ * sales are applied up to, moved in the same statement as its total count, so a batch handed out
+ * again after a crash only applies the sales the book table is missing. Sales exceeding the count of
+ * the book when they are applied, eg: after the count was lowered by an update, are logged and skipped.
+ * <p>
+ * Every applied batch is published as a {@link SalesAppliedEvent}, batches in sequence order.
+ * <p>
+ * Stock changes are numbered while the sales of the book are held, so a {@link StockChangedEvent}
+ * published late is recognized as older than one numbered after it.
+ */
+@Component
+public class SalesLedger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SalesLedger.class);
+    private static final int STRIPES = 64;
+
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final HotBookCache hotBookCache;
+    private final String directory;
+    private final int recordsPerSegment;
+    private final long groupCommitWindowMicros;
+    private final int applyBatchSize;
+    private final long applyIntervalMillis;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    //Write locked while sales are moved from pending to the book table, so reads never see them in both
+    private final StampedLock[] applying = new StampedLock[STRIPES];
+    private final ConcurrentMap<Long, AtomicInteger> pendingByBook = new ConcurrentHashMap<>();
+    //Numbers the stock reads of StockChangedEvent, taken under the stripe lock of the book
+    private final AtomicLong stockSequence = new AtomicLong();
+    private final ConcurrentMap<Long, LongAdder> soldByBook = new ConcurrentHashMap<>();
+    private final Map<Categories, LongAdder> soldPerCategory = new EnumMap<>(Categories.class);
+
+    private SalesJournal journal;
+    private Thread applier;
+    private volatile boolean running;
+
+    public SalesLedger(BookRepository bookRepository,
+                       ShardRouter shardRouter,
+                       ApplicationEventPublisher eventPublisher,
+                       HotBookCache hotBookCache,
+                       @Value("${bookstore.sales-journal.directory:data/sales-journal}") String directory,
+                       @Value("${bookstore.sales-journal.records-per-segment:1048576}") int recordsPerSegment,
+                       @Value("${bookstore.sales-journal.group-commit-window-micros:0}") long groupCommitWindowMicros,
+                       @Value("${bookstore.sales-journal.apply-batch-size:1000}") int applyBatchSize,
+                       @Value("${bookstore.sales-journal.apply-interval-ms:50}") long applyIntervalMillis) {
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+        this.eventPublisher = eventPublisher;
+        this.hotBookCache = hotBookCache;
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.groupCommitWindowMicros = groupCommitWindowMicros;
+        this.applyBatchSize = applyBatchSize;
+        this.applyIntervalMillis = applyIntervalMillis;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+            applying[i] = new StampedLock();
+        }
+        for (Categories categories : Categories.values()) {
+            soldPerCategory.put(categories, new LongAdder());
+        }
+    }
+
+    /**
+     * Replays the journal and starts applying sales to the book table.
+     *
+     * @throws IOException
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        journal = SalesJournal.open(Paths.get(directory), recordsPerSegment, groupCommitWindowMicros, this::count);
+        //Sequential, scatter threads would wait for the beans being created by this thread
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            long appliedInBookTable = shardRouter.onShard(shard, bookRepository::findMaxSalesAppliedUpTo);
+            if (appliedInBookTable > journal.getDurableSequence()) {
+                journal.close();
+                throw new IllegalStateException("Sales up to " + appliedInBookTable + " are applied to shard " + shard
+                        + " but the sales journal in " + directory + " ends at " + journal.getDurableSequence() + ".");
+            }
+        }
+        List<SaleRecord> unapplied = journal.unappliedRecords();
+        unapplied.forEach(record -> pending(record.getBookId()).addAndGet(record.getQuantity()));
+        LOGGER.info("Sales journal replayed, {} sales still to be applied to the book table.", unapplied.size());
+
+        running = true;
+        applier = new Thread(this::applyLoop, "sales-journal-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (applier != null) {
+            LockSupport.unpark(applier);
+            applier.join();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Sells the given quantities, all or none. Returns once the sales are durable in the journal.
+     *
+     * @param quantitiesById quantity to sell by book id
+     */
+    public void sell(Map<Long, Integer> quantitiesById) {
+        quantitiesById.values().forEach(quantity -> {
+            if (quantity == null || quantity <= 0) {
+                throw new BadRequestException("Quantity to sell should be positive value.");
+            }
+        });
+        List<ReentrantLock> locks = stripesFor(quantitiesById.keySet());
+        locks.forEach(ReentrantLock::lock);
+        List<SaleRecord> records = new ArrayList<>(quantitiesById.size());
+        List<StockChangedEvent> stockChanges = new ArrayList<>(quantitiesById.size());
+        try {
+            Map<Long, Book> books = shardRouter.onShardsOf(quantitiesById.keySet(), bookRepository::findAllById).stream()
+                    .collect(Collectors.toMap(Book::getId, Function.identity()));
+            quantitiesById.forEach((id, quantity) -> {
+                Book book = books.get(id);
+                if (book == null) {
+                    throw new BookNotFoundException("Book with id:" + id + " is not found.");
+                }
+                int available = book.getTotalCount() - getPendingQuantity(id);
+                if (available < quantity) {
+                    throw new BadRequestException("Only " + available + " copies of book with id:" + id + " are available.");
+                }
+            });
+            quantitiesById.forEach((id, quantity) -> {
+                Book book = books.get(id);
+                records.add(journal.append(id, quantity, book.getPrice(), book.getCategories()));
+                int pendingAfterSale = pending(id).addAndGet(quantity);
+                stockChanges.add(new StockChangedEvent(id, book.getCategories(), book.getTotalCount() - pendingAfterSale,
+                        stockSequence.incrementAndGet()));
+            });
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+        try {
+            journal.awaitDurable(records.get(records.size() - 1).getSequence());
+        } catch (InterruptedIOException e) {
+            throw new UncheckedIOException(e);
+        }
+        records.forEach(this::count);
+        stockChanges.forEach(eventPublisher::publishEvent);
+        LockSupport.unpark(applier);
+    }
+
+    /**
+     * Runs the action while no sale of the books can be made or applied, so their pending quantities
+     * stay as read, eg: to change their total count without going below the copies already sold.
+     *
+     * @param ids
+     * @param action
+     * @return the result of the action
+     */
+    public <T> T withSalesHeld(Collection<Long> ids, Supplier<T> action) {
+        List<ReentrantLock> locks = stripesFor(ids);
+        locks.forEach(ReentrantLock::lock);
+        try {
+            return action.get();
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    /**
+     * Reads the stock of the books while none of their sales can be made or applied,
+     * numbered after every stock change of the books made before.
+     *
+     * @param ids
+     * @return the stock of the books found, to be published
+     */
+    public List<StockChangedEvent> readStockChanges(Collection<Long> ids) {
+        return withSalesHeld(ids, () -> shardRouter.onShardsOf(ids, bookRepository::findAllById).stream()
+                .map(book -> new StockChangedEvent(book.getId(), book.getCategories(),
+                        book.getTotalCount() - getPendingQuantity(book.getId()), stockSequence.incrementAndGet()))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @param id
+     * @return quantity of the book sold but not yet applied to the book table
+     */
+    public int getPendingQuantity(Long id) {
+        AtomicInteger pending = pendingByBook.get(id);
+        return pending == null ? 0 : pending.get();
+    }
+
+    /**
+     * Copies of the book available for sale: the total count in the book table minus the pending quantity.
+     * The count is read again if sales of the book were applied meanwhile, so sales already applied to
+     * the count read are not deducted a second time.
+     *
+     * @param id
+     * @param totalCount reads the total count of the book
+     * @return copies available for sale
+     */
+    public int getAvailable(Long id, IntSupplier totalCount) {
+        StampedLock applyingStripe = applying[stripe(id)];
+        long stamp = applyingStripe.tryOptimisticRead();
+        int available = totalCount.getAsInt() - getPendingQuantity(id);
+        if (applyingStripe.validate(stamp)) {
+            return available;
+        }
+        stamp = applyingStripe.readLock();
+        try {
+            return totalCount.getAsInt() - getPendingQuantity(id);
+        } finally {
+            applyingStripe.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param id
+     * @return number of copies of the book sold
+     */
+    public long getSoldCount(Long id) {
+        LongAdder sold = soldByBook.get(id);
+        return sold == null ? 0 : sold.sum();
+    }
+
+    /**
+     * @return number of books sold per category
+     */
+    public Map<Categories, Long> getSoldPerCategory() {
+        Map<Categories, Long> sold = new EnumMap<>(Categories.class);
+        soldPerCategory.forEach((categories, count) -> sold.put(categories, count.sum()));
+        return sold;
+    }
+
+    /**
+     * Reads the durable sales from the given journal sequence on, eg: to catch up with sales
+     * made since a consumer of {@link SalesAppliedEvent} last saved its state.
+     *
+     * @param fromSequence
+     * @param consumer     called with every sale, in sequence order
+     * @throws IOException
+     */
+    public void forEachSale(long fromSequence, Consumer<SaleRecord> consumer) throws IOException {
+        journal.forEachDurable(fromSequence, consumer);
+    }
+
+    private void count(SaleRecord record) {
+        soldByBook.computeIfAbsent(record.getBookId(), id -> new LongAdder()).add(record.getQuantity());
+        if (record.getCategories() != null) {
+            soldPerCategory.get(record.getCategories()).add(record.getQuantity());
+        }
+    }
+
+    private AtomicInteger pending(Long id) {
+        return pendingByBook.computeIfAbsent(id, key -> new AtomicInteger());
+    }
+
+    //Distinct stripes in a fixed order so concurrent multi-book sales cannot deadlock
+    private List<ReentrantLock> stripesFor(Collection<Long> ids) {
+        return ids.stream()
+                .map(SalesLedger::stripe)
+                .distinct()
+                .sorted()
+                .map(stripe -> stripes[stripe])
+                .collect(Collectors.toList());
+    }
+
+    private static int stripe(Long id) {
+        return Math.floorMod(Long.hashCode(id), STRIPES);
+    }
+
+    private void applyLoop() {
+        Map<Long, List<SaleRecord>> toApply = new HashMap<>();
+        List<SaleRecord> batch = Collections.emptyList();
+        long appliedUpTo = 0;
+        while (running) {
+            try {
+                if (toApply.isEmpty()) {
+                    batch = journal.drainDurable(applyBatchSize);
+                    if (batch.isEmpty()) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(applyIntervalMillis));
+                        continue;
+                    }
+                    batch.forEach(record -> toApply.computeIfAbsent(record.getBookId(), id -> new ArrayList<>()).add(record));
+                    appliedUpTo = batch.get(batch.size() - 1).getSequence() + 1;
+                }
+                List<Long> appliedIds = new ArrayList<>(toApply.keySet());
+                apply(toApply);
+                journal.markApplied(appliedUpTo);
+                eventPublisher.publishEvent(new SalesAppliedEvent(batch));
+                eventPublisher.publishEvent(new CatalogChangedEvent(appliedIds));
+            } catch (RuntimeException e) {
+                LOGGER.error("Applying sales to the book table failed, retrying in {} ms.", applyIntervalMillis, e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(applyIntervalMillis));
+            }
+        }
+    }
+
+    //One set-based decrement per book of the batch; books applied are removed so a retry skips them.
+    //The cached book is dropped with its pending quantity, so a cached count never misses sales no longer pending
+    private void apply(Map<Long, List<SaleRecord>> toApply) {
+        Iterator<Map.Entry<Long, List<SaleRecord>>> iterator = toApply.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, List<SaleRecord>> entry = iterator.next();
+            Long id = entry.getKey();
+            ReentrantLock stripe = stripes[stripe(id)];
+            StampedLock applyingStripe = applying[stripe(id)];
+            stripe.lock();
+            long stamp = applyingStripe.writeLock();
+            try {
+                shardRouter.runOnShardOf(id, () -> applyToBook(id, entry.getValue()));
+                hotBookCache.invalidate(id);
+                pending(id).addAndGet(-entry.getValue().stream().mapToInt(SaleRecord::getQuantity).sum());
+            } finally {
+                applyingStripe.unlockWrite(stamp);
+                stripe.unlock();
+            }
+            iterator.remove();
+        }
+    }
+
+    //Only the sales after the position stored with the book are applied, eg: not those of a batch applied before a crash
+    private void applyToBook(Long id, List<SaleRecord> records) {
+        Optional<Long> appliedFrom = bookRepository.findSalesAppliedUpTo(id);
+        if (!appliedFrom.isPresent()) {
+            LOGGER.error("Book {} is not found, sales {} to {} of the journal are not applied.", id,
+                    records.get(0).getSequence(), records.get(records.size() - 1).getSequence());
+            return;
+        }
+        int quantity = records.stream()
+                .filter(record -> record.getSequence() >= appliedFrom.get())
+                .mapToInt(SaleRecord::getQuantity)
+                .sum();
+        if (quantity == 0) {
+            LOGGER.debug("Sales of book {} up to {} were applied already.", id, appliedFrom.get());
+            return;
+        }
+        long appliedUpTo = records.get(records.size() - 1).getSequence() + 1;
+        if (bookRepository.decrementTotalCount(id, quantity, appliedFrom.get(), appliedUpTo) == 0) {
+            //The count was lowered since the sales were accepted; it is left as it is rather than made negative
+            bookRepository.skipSales(id, appliedFrom.get(), appliedUpTo);
+            LOGGER.error("{} copies of book {} sold up to sale {} of the journal exceed its total count and are not applied.",
+                    quantity, id, appliedUpTo - 1);
+        }
+    }
+}
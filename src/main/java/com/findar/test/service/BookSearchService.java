@@ -0,0 +1,8 @@
+package com.findar.test.service;
+
+import com.findar.test.dtos.BookSearchPageDto;
+import com.findar.test.enums.Categories;
+
+public interface BookSearchService {
+    BookSearchPageDto search(String keyword, Categories categories, Integer limit, String cursor);
+}
@@ -1,9 +1,15 @@
 package com.findar.test.service;
 
 import com.findar.test.dtos.BookDto;
+import com.findar.test.dtos.SellBookDto;
+import com.findar.test.dtos.StockChangeDto;
+import com.findar.test.enums.BookField;
 import com.findar.test.enums.Categories;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface BookStoreService {
     void addNewBook(BookDto bookDto);
@@ -14,10 +20,28 @@ public interface BookStoreService {
 
     List<BookDto> getAllBooks();
 
+    List<Map<String, Object>> getAllBooks(Set<BookField> fields);
+
     int getNumberOfBooksById(Long id);
 
+    List<StockChangeDto> getNumberOfBooksByIds(Collection<Long> ids);
+
     void updateBook(Long id, BookDto bookDto);
 
+    List<BookDto> getBooksByCategories(Categories categories);
+
+    List<Map<String, Object>> getBooksByCategories(Categories categories, Set<BookField> fields);
+
     List<BookDto> getBookByCategoriesKeyWord(String keyword, Categories categories);
 
+    List<Map<String, Object>> getBookByCategoriesKeyWord(String keyword, Categories categories, Set<BookField> fields);
+
+    void sellBook(Long id, int quantity);
+
+    void sellBooks(List<SellBookDto> sellBookDtos);
+
+    Map<Categories, Long> getNumberOfBooksSoldPerCategory();
+
+    long getNumberOfBooksSoldByCategoriesKeyWord(String keyword, Categories categories);
+
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.findar.test.service;
+
+import com.findar.test.dtos.BulkAdjustmentDto;
+import com.findar.test.dtos.BulkAdjustmentResultDto;
+
+public interface BulkAdjustmentService {
+    BulkAdjustmentResultDto adjust(BulkAdjustmentDto bulkAdjustmentDto);
+}
@@ -0,0 +1,14 @@
+package com.findar.test.service;
+
+import com.findar.test.dtos.ExportJobDto;
+import com.findar.test.enums.ExportFormat;
+
+import java.nio.file.Path;
+
+public interface CatalogExportService {
+    ExportJobDto startExport(ExportFormat format, boolean compressed);
+
+    ExportJobDto getExport(String id);
+
+    Path getExportFile(String id);
+}
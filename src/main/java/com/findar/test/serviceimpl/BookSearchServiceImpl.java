@@ -0,0 +1,191 @@
+package com.findar.test.serviceimpl;
+
+import com.findar.test.dtos.BookDto;
+import com.findar.test.dtos.BookSearchPageDto;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.service.BookSearchService;
+import com.findar.test.sharding.ShardRouter;
+import org.modelmapper.ModelMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class BookSearchServiceImpl implements BookSearchService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookSearchServiceImpl.class);
+    //Same matching as BookRepository.findAllBookByCategoriesAndKeyword, only what the ranking needs is read
+    private static final String SELECT_MATCHES = "select b.id, b.title, b.author from book b where "
+            + "(LOWER(b.title) like ? OR CAST(b.id as CHAR) like ? OR LOWER(b.author) like ?) AND b.categories = ?";
+    private static final Comparator<Match> BY_RANK = Comparator.comparingInt(Match::getRank).thenComparingLong(Match::getId);
+
+    /**
+     * Exact title, title prefix, title substring, author substring, id substring
+     */
+    static final int EXACT_TITLE = 0;
+    static final int TITLE_PREFIX = 1;
+    static final int TITLE = 2;
+    static final int AUTHOR = 3;
+    static final int ID = 4;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+    private final ModelMapper modelMapper;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    @Autowired
+    public BookSearchServiceImpl(DataSource dataSource,
+                                 BookRepository bookRepository,
+                                 ShardRouter shardRouter,
+                                 ModelMapper modelMapper,
+                                 @Value("${bookstore.search.fetch-size:" + Integer.MIN_VALUE + "}") int fetchSize,
+                                 @Value("${bookstore.search.default-limit:20}") int defaultLimit,
+                                 @Value("${bookstore.search.max-limit:100}") int maxLimit) {
+        //Matches are streamed, Integer.MIN_VALUE makes the MySQL driver send rows one by one
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+        this.modelMapper = modelMapper;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * One page of the books of the category matching the keyword, best match first:
+     * exact title, then title prefix, title substring, author and id, books of the same rank by id.
+     * <p>
+     * Matches are streamed from every shard in parallel and only the best limit + 1 after the cursor
+     * are kept in a bounded heap per shard, so memory follows the page size and not the number of matches.
+     * The cursor holds the rank and id of the last book of the previous page.
+     *
+     * @param keyword
+     * @param categories
+     * @param limit      books per page, the default limit if null
+     * @param cursor     nextCursor of the previous page, null for the first page
+     * @return
+     */
+    @Override
+    public BookSearchPageDto search(String keyword, Categories categories, Integer limit, String cursor) {
+        int pageSize = limit == null ? defaultLimit : limit;
+        if (pageSize <= 0 || pageSize > maxLimit) {
+            throw new BadRequestException("Limit should be between 1 and " + maxLimit + ".");
+        }
+        Match after = cursor == null ? null : decodeCursor(cursor);
+        String lowerCaseKeyword = keyword.toLowerCase(Locale.ROOT);
+        String pattern = "%" + lowerCaseKeyword + "%";
+
+        //One more than the page tells whether there is a next page
+        List<List<Match>> perShard = shardRouter.onEveryShard(shard -> {
+            PriorityQueue<Match> best = new PriorityQueue<>(pageSize + 2, BY_RANK.reversed());
+            jdbcTemplate.query(SELECT_MATCHES, resultSet -> {
+                Match match = new Match(rank(lowerCaseKeyword, resultSet.getLong(1), resultSet.getString(2),
+                        resultSet.getString(3)), resultSet.getLong(1));
+                if (after == null || BY_RANK.compare(match, after) > 0) {
+                    best.offer(match);
+                    if (best.size() > pageSize + 1) {
+                        best.poll();
+                    }
+                }
+            }, pattern, pattern, pattern, categories.getValue());
+            List<Match> sorted = new ArrayList<>(best);
+            sorted.sort(BY_RANK);
+            return sorted;
+        });
+        List<Match> matches = ShardRouter.mergeSorted(perShard, BY_RANK);
+        List<Match> page = matches.subList(0, Math.min(pageSize, matches.size()));
+
+        Map<Long, Book> books = shardRouter.onShardsOf(page.stream().map(Match::getId).collect(Collectors.toList()),
+                bookRepository::findAllById).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        List<BookDto> bookDtos = page.stream()
+                .map(match -> books.get(match.getId()))
+                //Removed between the two queries
+                .filter(book -> book != null)
+                .map(book -> modelMapper.map(book, BookDto.class))
+                .collect(Collectors.toList());
+        LOGGER.debug("Search of {} in {} returned {} books.", keyword, categories, bookDtos.size());
+        return BookSearchPageDto.builder()
+                .books(bookDtos)
+                .nextCursor(matches.size() > pageSize ? encodeCursor(page.get(page.size() - 1)) : null)
+                .build();
+    }
+
+    /**
+     * @param keyword lower case
+     * @param id
+     * @param title
+     * @param author
+     * @return rank of the book for the keyword, lower is better
+     */
+    static int rank(String keyword, long id, String title, String author) {
+        String lowerCaseTitle = title == null ? "" : title.toLowerCase(Locale.ROOT);
+        if (lowerCaseTitle.equals(keyword)) {
+            return EXACT_TITLE;
+        }
+        if (lowerCaseTitle.startsWith(keyword)) {
+            return TITLE_PREFIX;
+        }
+        if (lowerCaseTitle.contains(keyword)) {
+            return TITLE;
+        }
+        if (author != null && author.toLowerCase(Locale.ROOT).contains(keyword)) {
+            return AUTHOR;
+        }
+        //Matched by the database on the id, or only under its collation
+        return ID;
+    }
+
+    private static String encodeCursor(Match match) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((match.getRank() + ":" + match.getId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Match decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            return new Match(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid cursor.");
+        }
+    }
+
+    private static final class Match {
+        private final int rank;
+        private final long id;
+
+        private Match(int rank, long id) {
+            this.rank = rank;
+            this.id = id;
+        }
+
+        private int getRank() {
+            return rank;
+        }
+
+        private long getId() {
+            return id;
+        }
+    }
+}
@@ -1,36 +1,71 @@
 package com.findar.test.serviceimpl;
 
+import com.findar.test.cache.HotBookCache;
 import com.findar.test.dtos.BookDto;
+import com.findar.test.dtos.SellBookDto;
+import com.findar.test.dtos.StockChangeDto;
 import com.findar.test.entities.Book;
+import com.findar.test.enums.BookField;
 import com.findar.test.enums.Categories;
+import com.findar.test.events.CatalogChangedEvent;
 import com.findar.test.exceptions.BadRequestException;
 import com.findar.test.exceptions.BookNotFoundException;
+import com.findar.test.exceptions.ConflictException;
 import com.findar.test.exceptions.DuplicateResourceException;
 import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
 import com.findar.test.service.BookStoreService;
+import com.findar.test.sharding.ShardRouter;
 import org.modelmapper.ModelMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.transaction.Transactional;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class BookStoreServiceImpl implements BookStoreService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BookStoreServiceImpl.class);
+    private static final Comparator<Book> BY_ID = Comparator.comparing(Book::getId);
+    private static final Comparator<Map<String, Object>> ROW_BY_ID = Comparator.comparing(row -> (Long) row.get(BookField.ID.getProperty()));
     private final BookRepository bookRepository;
 
     private final ModelMapper modelMapper;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final SalesLedger salesLedger;
+
+    private final HotBookCache hotBookCache;
+
+    private final ShardRouter shardRouter;
+
     @Autowired
-    public BookStoreServiceImpl(BookRepository bookRepository, ModelMapper modelMapper) {
+    public BookStoreServiceImpl(BookRepository bookRepository, ModelMapper modelMapper,
+                                ApplicationEventPublisher eventPublisher, SalesLedger salesLedger,
+                                HotBookCache hotBookCache, ShardRouter shardRouter) {
         this.bookRepository = bookRepository;
         this.modelMapper = modelMapper;
+        this.eventPublisher = eventPublisher;
+        this.salesLedger = salesLedger;
+        this.hotBookCache = hotBookCache;
+        this.shardRouter = shardRouter;
     }
 
     /**
@@ -43,41 +78,46 @@ public class BookStoreServiceImpl implements BookStoreService {
     @Override
     @Transactional
     public void addNewBook(BookDto bookDto) {
-        //Check if bookDto is previously present
-        Optional<Book> bookById = bookRepository.findById(bookDto.getId());
-        bookById.ifPresent(book -> {
-            throw new DuplicateResourceException("Book with same id present. " +
-                    "Either use update methods to update the book counts or use addBook(Long id, int quantityToAdd) methods");
-        });
-        if (!bookById.isPresent()) {
-            LOGGER.info("No Duplicates found.");
+        shardRouter.runOnShardOf(bookDto.getId(), () -> {
+            //Check if bookDto is previously present
+            Optional<Book> bookById = bookRepository.findById(bookDto.getId());
+            bookById.ifPresent(book -> {
+                throw new DuplicateResourceException("Book with same id present. " +
+                        "Either use update methods to update the book counts or use addBook(Long id, int quantityToAdd) methods");
+            });
+            LOGGER.debug("No duplicates found for book id {}.", bookDto.getId());
             //Map bookDto to book
             Book book = modelMapper.map(bookDto, Book.class);
             //Set the status to available
-            LOGGER.info("The data are mapped and ready to save.");
+            LOGGER.debug("The data are mapped and ready to save.");
 
             //Save to book
             bookRepository.save(book);
-        }
+            eventPublisher.publishEvent(CatalogChangedEvent.of(book.getId()));
+            publishStockChanged(book.getId());
+        });
     }
 
     /**
      * This method adds the quantity of book if the book with given id is already registered.
+     * The count is incremented in the database, so concurrent restocks are never lost.
      *
      * @param id
      * @param quantityToAdd
      */
     @Override
     public void addBook(Long id, int quantityToAdd) {
-        //Get the book by id
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new BookNotFoundException("Book with id:" + id + " is not registered. Use addNewBook to register."));
-        LOGGER.info("The book with id " + id + " is registered");
-
-        int totalCountAfterAdd = book.getTotalCount() + quantityToAdd;
-        book.setTotalCount(totalCountAfterAdd);
-
-        bookRepository.save(book);
+        if (quantityToAdd <= 0) {
+            throw new BadRequestException("Quantity to add should be positive value.");
+        }
+        shardRouter.runOnShardOf(id, () -> {
+            if (bookRepository.incrementTotalCount(id, quantityToAdd) == 0) {
+                throw new BookNotFoundException("Book with id:" + id + " is not registered. Use addNewBook to register.");
+            }
+            LOGGER.debug("The book with id {} is registered", id);
+        });
+        eventPublisher.publishEvent(CatalogChangedEvent.of(id));
+        publishStockChanged(id);
     }
 
     /**
@@ -88,8 +128,8 @@ public class BookStoreServiceImpl implements BookStoreService {
      */
     @Override
     public BookDto getBookById(Long id) {
-        //Get the book from repo
-        Book book = bookRepository.findById(id)
+        //Get the book from the hot books or the repo
+        Book book = hotBookCache.get(id, this::findById)
                 .orElseThrow(() -> new BookNotFoundException("Book with id:" + id + " is not found."));
 
         return modelMapper.map(book, BookDto.class);
@@ -97,32 +137,46 @@ public class BookStoreServiceImpl implements BookStoreService {
 
 
     /**
-     * List all the books
+     * List all the books, ordered by id
+     * Every shard is read in parallel.
      *
      * @return List<BookDto>
      */
     @Override
     public List<BookDto> getAllBooks() {
-        List<Book> books = bookRepository.findAll();
+        List<Book> books = ShardRouter.mergeSorted(shardRouter.onEveryShard(shard ->
+                bookRepository.findAll(Sort.by("id"))), BY_ID);
         return mapBookListToBooDtoList(books);
     }
 
+    /**
+     * List all the books with only the given fields, ordered by id
+     * Only the columns of the fields are read, no book entity is loaded.
+     *
+     * @param fields
+     * @return field values of each book
+     */
+    @Override
+    public List<Map<String, Object>> getAllBooks(Set<BookField> fields) {
+        return ShardRouter.mergeSorted(shardRouter.onEveryShard(shard -> bookRepository.findAllFields(fields)), ROW_BY_ID);
+    }
+
     /**
      * Number of books on particular identifier
+     * Sales not yet applied to the book table are already deducted.
      *
      * @param id
      * @return
      */
     @Override
     public int getNumberOfBooksById(Long id) {
-        Optional<Book> book = bookRepository.findById(id);
-
         //If book is present get Total Count else return 0
-        return book.isPresent() ? book.get().getTotalCount() : 0;
+        return salesLedger.getAvailable(id, () -> hotBookCache.get(id, this::findById).map(Book::getTotalCount).orElse(0));
     }
 
     /**
      * update a book
+     * Rejected if bookDto has a version and the book changed since, or if the book changes while being updated.
      *
      * @param id
      * @param bookDto
@@ -138,14 +192,61 @@ public class BookStoreServiceImpl implements BookStoreService {
         }
         //If id is removed from bookDto, it still sets the id from pathvariable
         book.setId(id);
-        LOGGER.info("BookDto are mapped to Book and ready to be saved.");
-        bookRepository.save(book);
+        shardRouter.runOnShardOf(id, () -> {
+            //Update the stored book in place so its version is kept and incremented
+            Book toSave = bookRepository.findById(id).map(stored -> {
+                if (bookDto.getVersion() != null && bookDto.getVersion() != stored.getVersion()) {
+                    throw new ConflictException("Book with id:" + id + " changed since it was read.");
+                }
+                stored.setTitle(book.getTitle());
+                stored.setAuthor(book.getAuthor());
+                stored.setCategories(book.getCategories());
+                stored.setPrice(book.getPrice());
+                stored.setTotalCount(book.getTotalCount());
+                return stored;
+            }).orElse(book);
+            LOGGER.debug("BookDto for id {} is mapped to Book and ready to be saved.", id);
+            try {
+                //Flushed here so a concurrent change is reported as a conflict rather than failing the commit
+                bookRepository.saveAndFlush(toSave);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                throw new ConflictException("Book with id:" + id + " changed while being updated.");
+            }
+        });
+        eventPublisher.publishEvent(CatalogChangedEvent.of(id));
+        publishStockChanged(id);
     }
 
+    /**
+     * List the books of one category, ordered by id
+     *
+     * @param categories
+     * @return List<BookDto>
+     */
+    @Override
+    public List<BookDto> getBooksByCategories(Categories categories) {
+        List<Book> books = ShardRouter.mergeSorted(shardRouter.onEveryShard(shard ->
+                bookRepository.findAllByCategoriesOrderById(categories)), BY_ID);
+        return mapBookListToBooDtoList(books);
+    }
+
+    /**
+     * List the books of one category with only the given fields, ordered by id
+     *
+     * @param categories
+     * @param fields
+     * @return field values of each book
+     */
+    @Override
+    public List<Map<String, Object>> getBooksByCategories(Categories categories, Set<BookField> fields) {
+        return ShardRouter.mergeSorted(shardRouter.onEveryShard(shard ->
+                bookRepository.findFieldsByCategories(fields, categories)), ROW_BY_ID);
+    }
 
     /**
      * Get the list of books according to category and keyword
      * Keyword is assumed to be any words in id, title and author field of the book
+     * Every shard is searched in parallel, the books are ordered by id.
      *
      * @param categories
      * @param keyword
@@ -156,11 +257,136 @@ public class BookStoreServiceImpl implements BookStoreService {
                                                     Categories categories) {
 
         //if the status is Available, gives list of books which are available
-        LOGGER.info("Fetch all the books by category and keyword.");
-        List<Book> book = bookRepository.findAllBookByCategoriesAndKeyword(keyword.toLowerCase(), categories.getValue());
+        LOGGER.debug("Fetch all the books by category {} and keyword {}.", categories, keyword);
+        List<Book> book = ShardRouter.mergeSorted(findAllBookByCategoriesAndKeyword(keyword, categories), BY_ID);
         return mapBookListToBooDtoList(book);
     }
 
+    /**
+     * Get the list of books according to category and keyword with only the given fields, ordered by id
+     *
+     * @param keyword
+     * @param categories
+     * @param fields
+     * @return field values of each book
+     */
+    @Override
+    public List<Map<String, Object>> getBookByCategoriesKeyWord(String keyword, Categories categories,
+                                                                Set<BookField> fields) {
+        LOGGER.debug("Fetch fields {} of the books by category {} and keyword {}.", fields, categories, keyword);
+        return ShardRouter.mergeSorted(shardRouter.onEveryShard(shard ->
+                bookRepository.findFieldsByCategoriesAndKeyword(fields, keyword.toLowerCase(), categories)), ROW_BY_ID);
+    }
+
+    /**
+     * Sell copies of a book
+     * Returns once the sale is recorded in the sales journal, the book table is updated afterwards.
+     *
+     * @param id
+     * @param quantity
+     */
+    @Override
+    public void sellBook(Long id, int quantity) {
+        salesLedger.sell(Collections.singletonMap(id, quantity));
+    }
+
+    /**
+     * Sell a list of books, either all of them are sold or none
+     *
+     * @param sellBookDtos
+     */
+    @Override
+    public void sellBooks(List<SellBookDto> sellBookDtos) {
+        if (sellBookDtos.isEmpty()) {
+            throw new BadRequestException("No books to sell.");
+        }
+        //Checked here, the constraints of SellBookDto are not applied to the elements of a list body
+        sellBookDtos.forEach(sellBookDto -> {
+            if (sellBookDto == null || sellBookDto.getId() == null) {
+                throw new BadRequestException("Id of the book to sell is missing.");
+            }
+            if (sellBookDto.getQuantity() <= 0) {
+                throw new BadRequestException("Quantity to sell should be positive value.");
+            }
+        });
+        //The same book may be listed more than once
+        Map<Long, Integer> quantitiesById = sellBookDtos.stream()
+                .collect(Collectors.toMap(SellBookDto::getId, SellBookDto::getQuantity, Integer::sum, LinkedHashMap::new));
+        salesLedger.sell(quantitiesById);
+    }
+
+    /**
+     * Number of books sold in each category
+     *
+     * @return
+     */
+    @Override
+    public Map<Categories, Long> getNumberOfBooksSoldPerCategory() {
+        return salesLedger.getSoldPerCategory();
+    }
+
+    /**
+     * Number of books sold among the books matching the category and keyword
+     *
+     * @param keyword
+     * @param categories
+     * @return
+     */
+    @Override
+    public long getNumberOfBooksSoldByCategoriesKeyWord(String keyword, Categories categories) {
+        return findAllBookByCategoriesAndKeyword(keyword, categories).stream()
+                .flatMap(List::stream)
+                .mapToLong(book -> salesLedger.getSoldCount(book.getId()))
+                .sum();
+    }
+
+    /**
+     * Number of books available for each of the given identifiers, unknown ids are left out
+     *
+     * @param ids
+     * @return
+     */
+    @Override
+    public List<StockChangeDto> getNumberOfBooksByIds(Collection<Long> ids) {
+        return salesLedger.readStockChanges(ids).stream()
+                .map(stockChange -> StockChangeDto.builder()
+                        .id(stockChange.getBookId())
+                        .categories(stockChange.getCategories())
+                        .totalCount(stockChange.getAvailable())
+                        .sequence(stockChange.getSequence())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private Optional<Book> findById(Long id) {
+        return shardRouter.onShardOf(id, () -> bookRepository.findById(id));
+    }
+
+    //Matching books of each shard, ordered by id
+    private List<List<Book>> findAllBookByCategoriesAndKeyword(String keyword, Categories categories) {
+        return shardRouter.onEveryShard(shard ->
+                bookRepository.findAllBookByCategoriesAndKeyword(keyword.toLowerCase(), categories.getValue()));
+    }
+
+    //Read again under the lock of the ledger, so the event is numbered in the order of the stock changes.
+    //In a transaction only after it commits, the ledger lock is taken before the row locks and never while holding them
+    private void publishStockChanged(Long id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readAndPublishStockChanged(id);
+                }
+            });
+        } else {
+            readAndPublishStockChanged(id);
+        }
+    }
+
+    private void readAndPublishStockChanged(Long id) {
+        salesLedger.readStockChanges(Collections.singletonList(id)).forEach(eventPublisher::publishEvent);
+    }
+
     //Convert List of books to List of bookDto
     private List<BookDto> mapBookListToBooDtoList(List<Book> books) {
         return books.stream()
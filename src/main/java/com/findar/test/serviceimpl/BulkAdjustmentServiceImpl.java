@@ -0,0 +1,147 @@
+package com.findar.test.serviceimpl;
+
+import com.findar.test.dtos.BulkAdjustmentDto;
+import com.findar.test.dtos.BulkAdjustmentResultDto;
+import com.findar.test.enums.AdjustmentOperation;
+import com.findar.test.enums.BookField;
+import com.findar.test.events.CatalogChangedEvent;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.service.BulkAdjustmentService;
+import com.findar.test.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+@Service
+public class BulkAdjustmentServiceImpl implements BulkAdjustmentService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkAdjustmentServiceImpl.class);
+
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+    private final SalesLedger salesLedger;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    @Autowired
+    public BulkAdjustmentServiceImpl(BookRepository bookRepository,
+                                     ShardRouter shardRouter,
+                                     SalesLedger salesLedger,
+                                     ApplicationEventPublisher eventPublisher,
+                                     @Value("${bookstore.bulk-adjustment.chunk-size:500}") int chunkSize) {
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+        this.salesLedger = salesLedger;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Adjusts the price or total count of the books matching the category, ids and keyword given.
+     * Shards are adjusted in parallel, each chunk after chunk of ids, with one update statement and transaction
+     * per chunk, so rows are locked only for the time of a chunk. Caches are invalidated after each chunk.
+     * A failure leaves the chunks done so far adjusted.
+     * <p>
+     * A total count is never lowered below the copies sold and not yet applied to it: the sales of the
+     * chunk are held during the update, and books with a different pending quantity are updated apart.
+     *
+     * @param bulkAdjustmentDto
+     * @return books matched and adjusted
+     */
+    @Override
+    public BulkAdjustmentResultDto adjust(BulkAdjustmentDto bulkAdjustmentDto) {
+        validate(bulkAdjustmentDto);
+        String keyword = StringUtils.hasText(bulkAdjustmentDto.getKeyword())
+                ? bulkAdjustmentDto.getKeyword().toLowerCase() : null;
+        //Shards in parallel on the scatter threads, each with its own sessions rather than the one of the caller
+        List<BulkAdjustmentResultDto> perShard = shardRouter.onEveryShard(shard -> adjustShard(bulkAdjustmentDto, keyword));
+        long matched = perShard.stream().mapToLong(BulkAdjustmentResultDto::getMatched).sum();
+        long adjusted = perShard.stream().mapToLong(BulkAdjustmentResultDto::getAdjusted).sum();
+        LOGGER.info("Bulk {} of {} by {}: {} books matched, {} adjusted.", bulkAdjustmentDto.getOperation(),
+                bulkAdjustmentDto.getField().getProperty(), bulkAdjustmentDto.getValue(), matched, adjusted);
+        return BulkAdjustmentResultDto.builder()
+                .matched(matched)
+                .adjusted(adjusted)
+                .build();
+    }
+
+    //Chunk after chunk of the shard selected by the caller, the events of a chunk are handled on this thread
+    private BulkAdjustmentResultDto adjustShard(BulkAdjustmentDto bulkAdjustmentDto, String keyword) {
+        long matched = 0;
+        long adjusted = 0;
+        Long afterId = null;
+        while (true) {
+            List<Long> ids = bookRepository.findIdsMatching(
+                    bulkAdjustmentDto.getCategories(), bulkAdjustmentDto.getIds(), keyword, afterId, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            matched += ids.size();
+            adjusted += bulkAdjustmentDto.getField() == BookField.TOTAL_COUNT
+                    ? salesLedger.withSalesHeld(ids, () -> adjustStock(ids, bulkAdjustmentDto))
+                    : bookRepository.adjust(ids, bulkAdjustmentDto.getField(),
+                    bulkAdjustmentDto.getOperation(), bulkAdjustmentDto.getValue(), 0);
+            eventPublisher.publishEvent(new CatalogChangedEvent(ids));
+            if (bulkAdjustmentDto.getField() == BookField.TOTAL_COUNT) {
+                salesLedger.readStockChanges(ids).forEach(eventPublisher::publishEvent);
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        return BulkAdjustmentResultDto.builder()
+                .matched(matched)
+                .adjusted(adjusted)
+                .build();
+    }
+
+    //One update per pending quantity, usually the single group of books without pending sales
+    private int adjustStock(List<Long> ids, BulkAdjustmentDto bulkAdjustmentDto) {
+        Map<Integer, List<Long>> idsByPending = ids.stream()
+                .collect(Collectors.groupingBy(salesLedger::getPendingQuantity, TreeMap::new, Collectors.toList()));
+        int adjusted = 0;
+        for (Map.Entry<Integer, List<Long>> group : idsByPending.entrySet()) {
+            adjusted += bookRepository.adjust(group.getValue(), BookField.TOTAL_COUNT,
+                    bulkAdjustmentDto.getOperation(), bulkAdjustmentDto.getValue(), group.getKey());
+        }
+        return adjusted;
+    }
+
+    private void validate(BulkAdjustmentDto bulkAdjustmentDto) {
+        if (bulkAdjustmentDto.getCategories() == null && bulkAdjustmentDto.getIds() == null
+                && !StringUtils.hasText(bulkAdjustmentDto.getKeyword())) {
+            throw new BadRequestException("Give a category, ids or a keyword to select the books to adjust.");
+        }
+        if (bulkAdjustmentDto.getIds() != null && bulkAdjustmentDto.getIds().isEmpty()) {
+            throw new BadRequestException("No books to adjust.");
+        }
+        //Checked here, the @NotNull of BulkAdjustmentDto is not enforced without a validation provider
+        BookField field = bulkAdjustmentDto.getField();
+        if (field == null) {
+            throw new BadRequestException("Field to adjust is missing.");
+        }
+        if (field != BookField.PRICE && field != BookField.TOTAL_COUNT) {
+            throw new BadRequestException("Only price and totalCount can be adjusted.");
+        }
+        AdjustmentOperation operation = bulkAdjustmentDto.getOperation();
+        if (operation == null) {
+            throw new BadRequestException("Operation of the adjustment is missing.");
+        }
+        double value = bulkAdjustmentDto.getValue();
+        if (operation == AdjustmentOperation.SET && value < 0) {
+            throw new BadRequestException("The " + field.getProperty() + " should be positive value.");
+        }
+        if (field == BookField.TOTAL_COUNT && operation != AdjustmentOperation.PERCENT && value != Math.rint(value)) {
+            throw new BadRequestException("The totalCount can only be set or changed by a whole number.");
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.findar.test.serviceimpl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.findar.test.dtos.ExportJobDto;
+import com.findar.test.enums.Categories;
+import com.findar.test.enums.ExportFormat;
+import com.findar.test.enums.ExportStatus;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.exceptions.ExportNotFoundException;
+import com.findar.test.service.CatalogExportService;
+import com.findar.test.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class CatalogExportServiceImpl implements CatalogExportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogExportServiceImpl.class);
+    private static final String SELECT_BOOKS = "select id, title, author, categories, price, total_count from book order by id";
+    private static final int PROGRESS_INTERVAL = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentMap<String, ExportJobDto> exports = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CatalogExportServiceImpl(DataSource dataSource,
+                                    ShardRouter shardRouter,
+                                    ObjectMapper objectMapper,
+                                    @Value("${bookstore.export.directory:data/exports}") String directory,
+                                    @Value("${bookstore.export.fetch-size:" + Integer.MIN_VALUE + "}") int fetchSize) {
+        //Forward-only, read-only cursor; Integer.MIN_VALUE makes the MySQL driver stream rows one by one
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start writing all the books to a file on local disk
+     * Exports run one at a time on a background thread.
+     *
+     * @param format
+     * @param compressed gzip the file
+     * @return the export, still running
+     */
+    @Override
+    public ExportJobDto startExport(ExportFormat format, boolean compressed) {
+        ExportJobDto export = ExportJobDto.builder()
+                .id(UUID.randomUUID().toString())
+                .format(format)
+                .compressed(compressed)
+                .status(ExportStatus.RUNNING)
+                .build();
+        exports.put(export.getId(), export);
+        executor.execute(() -> runExport(export));
+        LOGGER.info("Export {} of the catalog as {} started.", export.getId(), format);
+        return export;
+    }
+
+    /**
+     * Get the status of an export
+     *
+     * @param id
+     * @return
+     */
+    @Override
+    public ExportJobDto getExport(String id) {
+        ExportJobDto export = exports.get(id);
+        if (export == null) {
+            throw new ExportNotFoundException("Export with id:" + id + " is not found.");
+        }
+        return export;
+    }
+
+    /**
+     * Get the file of a completed export
+     *
+     * @param id
+     * @return
+     */
+    @Override
+    public Path getExportFile(String id) {
+        ExportJobDto export = getExport(id);
+        if (export.getStatus() != ExportStatus.COMPLETED) {
+            throw new BadRequestException("Export with id:" + id + " is " + export.getStatus() + ".");
+        }
+        return directory.resolve(fileName(export));
+    }
+
+    private void runExport(ExportJobDto export) {
+        Path file = directory.resolve(fileName(export));
+        Path partFile = directory.resolve(fileName(export) + ".part");
+        try {
+            Files.createDirectories(directory);
+            long rows;
+            try (OutputStream out = open(partFile, export.isCompressed());
+                 Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                rows = export.getFormat() == ExportFormat.CSV ? writeCsv(export.getId(), writer) : writeNdjson(export.getId(), writer);
+            }
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long size = Files.size(file);
+            exports.put(export.getId(), export.toBuilder().status(ExportStatus.COMPLETED).rows(rows).size(size).build());
+            LOGGER.info("Export {} completed, {} books in {} bytes.", export.getId(), rows, size);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Export {} failed.", export.getId(), e);
+            exports.put(export.getId(), export.toBuilder().status(ExportStatus.FAILED).error(e.getMessage()).build());
+            try {
+                Files.deleteIfExists(partFile);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+        }
+    }
+
+    private long writeCsv(String id, Writer writer) throws IOException {
+        writer.write("id,title,author,categories,price,totalCount\n");
+        long[] rows = {0};
+        queryBooks((ResultSet resultSet) -> {
+            try {
+                writer.write(Long.toString(resultSet.getLong(1)));
+                writer.write(',');
+                writeCsvField(writer, resultSet.getString(2));
+                writer.write(',');
+                writeCsvField(writer, resultSet.getString(3));
+                writer.write(',');
+                writeCsvField(writer, categories(resultSet));
+                writer.write(',');
+                writer.write(Float.toString(resultSet.getFloat(5)));
+                writer.write(',');
+                writer.write(Integer.toString(resultSet.getInt(6)));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            progress(id, ++rows[0]);
+        });
+        return rows[0];
+    }
+
+    private long writeNdjson(String id, Writer writer) throws IOException {
+        long[] rows = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            generator.setRootValueSeparator(null);
+            queryBooks((ResultSet resultSet) -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", resultSet.getLong(1));
+                    generator.writeStringField("title", resultSet.getString(2));
+                    generator.writeStringField("author", resultSet.getString(3));
+                    generator.writeStringField("categories", categories(resultSet));
+                    generator.writeNumberField("price", resultSet.getFloat(5));
+                    generator.writeNumberField("totalCount", resultSet.getInt(6));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                progress(id, ++rows[0]);
+            });
+        }
+        return rows[0];
+    }
+
+    //Shard after shard, the books of each shard ordered by id
+    private void queryBooks(RowCallbackHandler handler) {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            shardRouter.runOnShard(shard, () -> jdbcTemplate.query(SELECT_BOOKS, handler));
+        }
+    }
+
+    private void progress(String id, long rows) {
+        if (rows % PROGRESS_INTERVAL == 0) {
+            exports.computeIfPresent(id, (key, export) -> export.toBuilder().rows(rows).build());
+        }
+    }
+
+    private static String categories(ResultSet resultSet) throws SQLException {
+        int value = resultSet.getInt(4);
+        if (resultSet.wasNull()) {
+            return null;
+        }
+        Categories categories = Categories.valueOf(value);
+        return categories == null ? null : categories.name();
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static OutputStream open(Path file, boolean compressed) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        return compressed ? new GZIPOutputStream(out, 64 * 1024) : new BufferedOutputStream(out, 64 * 1024);
+    }
+
+    private static String fileName(ExportJobDto export) {
+        return export.getId() + "." + export.getFormat().getExtension() + (export.isCompressed() ? ".gz" : "");
+    }
+}
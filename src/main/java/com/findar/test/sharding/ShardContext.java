@@ -0,0 +1,42 @@
+package com.findar.test.sharding;
+
+/**
+ * Shard the current thread works on, read by {@link ShardRoutingDataSource} when a connection is taken.
+ * Set it through {@link ShardRouter} rather than directly.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Shard of the current thread, null when none is selected
+     *
+     * @return
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Select a shard for the current thread
+     *
+     * @param shard
+     * @return the shard selected before, to be given back to {@link #restore(Integer)}
+     */
+    static Integer set(Integer shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
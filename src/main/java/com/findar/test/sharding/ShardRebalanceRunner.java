@@ -0,0 +1,36 @@
+package com.findar.test.sharding;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Started with --rebalance-shards the application rebalances the shards and exits instead of serving.
+ */
+@Component
+public class ShardRebalanceRunner implements ApplicationRunner {
+
+    static final String REBALANCE_OPTION = "rebalance-shards";
+
+    private final ShardRebalancer shardRebalancer;
+
+    private final ApplicationContext applicationContext;
+
+    @Autowired
+    public ShardRebalanceRunner(ShardRebalancer shardRebalancer, ApplicationContext applicationContext) {
+        this.shardRebalancer = shardRebalancer;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(REBALANCE_OPTION)) {
+            return;
+        }
+        shardRebalancer.rebalance();
+        System.exit(SpringApplication.exit(applicationContext, () -> 0));
+    }
+}
@@ -0,0 +1,98 @@
+package com.findar.test.sharding;
+
+import com.findar.test.entities.Book;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.repositories.BookVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Moves every book not on the shard its id hashes to, after shards were added or removed.
+ * Books are copied to their shard before they are deleted from the old one, so an interrupted run
+ * is completed by running it again. Run it while the bookstore takes no writes.
+ */
+@Component
+public class ShardRebalancer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private final BookRepository bookRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    @Autowired
+    public ShardRebalancer(BookRepository bookRepository,
+                           ShardRouter shardRouter,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${bookstore.sharding.rebalance-batch-size:500}") int batchSize) {
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Move the misplaced books of every shard
+     *
+     * @return number of books moved away from each shard
+     */
+    public Map<Integer, Integer> rebalance() {
+        Map<Integer, Integer> movedByShard = new TreeMap<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int source = shard;
+            int moved = 0;
+            Long after = Long.MIN_VALUE;
+            List<Long> ids;
+            do {
+                Long from = after;
+                ids = shardRouter.onShard(source, () -> bookRepository.findIdsAfter(from, PageRequest.of(0, batchSize)));
+                List<Long> misplaced = ids.stream()
+                        .filter(id -> shardRouter.shardFor(id) != source)
+                        .collect(Collectors.toList());
+                if (!misplaced.isEmpty()) {
+                    move(source, misplaced);
+                    moved += misplaced.size();
+                }
+                if (!ids.isEmpty()) {
+                    after = ids.get(ids.size() - 1);
+                }
+            } while (ids.size() == batchSize);
+            LOGGER.info("Moved {} books away from shard {}.", moved, source);
+            movedByShard.put(source, moved);
+        }
+        return movedByShard;
+    }
+
+    private void move(int source, List<Long> ids) {
+        List<Book> books = shardRouter.onShard(source, () -> bookRepository.findAllById(ids));
+        books.stream()
+                .collect(Collectors.groupingBy(book -> shardRouter.shardFor(book.getId())))
+                .forEach((target, targetBooks) -> transactionTemplate.executeWithoutResult(status ->
+                        shardRouter.runOnShard(target, () -> {
+                            //A copy left by an interrupted run is overwritten with the book of the old shard
+                            Map<Long, Long> versions = bookRepository.findVersionsByIdIn(targetBooks.stream()
+                                    .map(Book::getId)
+                                    .collect(Collectors.toList()))
+                                    .stream()
+                                    .collect(Collectors.toMap(BookVersion::getId, BookVersion::getVersion));
+                            targetBooks.forEach(book -> book.setVersion(versions.getOrDefault(book.getId(), book.getVersion())));
+                            bookRepository.saveAll(targetBooks);
+                        })));
+        shardRouter.runOnShard(source, () -> bookRepository.deleteAllByIdInBatch(ids));
+    }
+}
@@ -0,0 +1,282 @@
+package com.findar.test.sharding;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Routes work on books to the shard holding them, the shard of a book is a hash of its id.
+ * Without shards configured everything runs on the single datasource as shard 0.
+ * <p>
+ * Repository calls made inside {@link #onShard(int, Supplier)} use the connections of that shard. A transaction
+ * takes its connection on its first statement, so it has to select the shard before then and stays on it.
+ * The same holds for an entity manager kept open across calls, which is why open-in-view is disabled.
+ */
+@Component
+public class ShardRouter {
+
+    private final int shardCount;
+
+    private final ExecutorService executor;
+
+    @Autowired
+    public ShardRouter(@Value("${bookstore.sharding.urls:}") String[] urls,
+                       @Value("${bookstore.sharding.scatter-threads:16}") int scatterThreads) {
+        this(Math.max(1, urls.length), scatterThreads);
+    }
+
+    public ShardRouter(int shardCount, int scatterThreads) {
+        this.shardCount = shardCount;
+        if (shardCount > 1) {
+            AtomicInteger threads = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(scatterThreads, runnable -> {
+                Thread thread = new Thread(runnable, "shard-scatter-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Shard holding the book with the given id
+     *
+     * @param id
+     * @return
+     */
+    public int shardFor(Long id) {
+        return shardFor(id, shardCount);
+    }
+
+    /**
+     * Shard holding the book with the given id among shardCount shards
+     * Ids not set go to the first shard, where the repository rejects them.
+     *
+     * @param id
+     * @param shardCount
+     * @return
+     */
+    public static int shardFor(Long id, int shardCount) {
+        if (id == null) {
+            return 0;
+        }
+        //Finalizer of MurmurHash3 so ids following a pattern still spread evenly
+        long hash = id;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) Math.floorMod(hash, (long) shardCount);
+    }
+
+    /**
+     * Run the action against the given shard
+     *
+     * @param shard
+     * @param action
+     * @return
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = ShardContext.set(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    public void runOnShard(int shard, Runnable action) {
+        onShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run the action against the shard holding the book with the given id
+     *
+     * @param id
+     * @param action
+     * @return
+     */
+    public <T> T onShardOf(Long id, Supplier<T> action) {
+        return onShard(shardFor(id), action);
+    }
+
+    public void runOnShardOf(Long id, Runnable action) {
+        runOnShard(shardFor(id), action);
+    }
+
+    /**
+     * Group the ids by the shard holding them, in shard order
+     *
+     * @param ids
+     * @return
+     */
+    public Map<Integer, List<Long>> groupByShard(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+        ids.forEach(id -> idsByShard.computeIfAbsent(shardFor(id), shard -> new ArrayList<>()).add(id));
+        return idsByShard;
+    }
+
+    /**
+     * Run the action on every shard in parallel
+     *
+     * @param action given the shard it runs on
+     * @return the results in shard order
+     */
+    public <T> List<T> onEveryShard(IntFunction<T> action) {
+        if (shardCount == 1) {
+            return Collections.singletonList(onShard(0, () -> action.apply(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(executor.submit(() -> onShard(target, () -> action.apply(target))));
+        }
+        return join(futures);
+    }
+
+    /**
+     * Run the action in parallel on each shard holding some of the ids, with the ids it holds
+     *
+     * @param ids
+     * @param action
+     * @return the results of all the shards
+     */
+    public <T> List<T> onShardsOf(Collection<Long> ids, Function<List<Long>, List<T>> action) {
+        Map<Integer, List<Long>> idsByShard = groupByShard(ids);
+        if (idsByShard.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (idsByShard.size() == 1) {
+            Map.Entry<Integer, List<Long>> only = idsByShard.entrySet().iterator().next();
+            return onShard(only.getKey(), () -> action.apply(only.getValue()));
+        }
+        List<Future<List<T>>> futures = new ArrayList<>(idsByShard.size());
+        idsByShard.forEach((shard, shardIds) ->
+                futures.add(executor.submit(() -> onShard(shard, () -> action.apply(shardIds)))));
+        List<T> results = new ArrayList<>();
+        join(futures).forEach(results::addAll);
+        return results;
+    }
+
+    /**
+     * Same as {@link #onShardsOf(Collection, Function)} but shard after shard on the calling thread.
+     * For startup callbacks, where scatter threads would wait for the beans being created by the caller.
+     *
+     * @param ids
+     * @param action
+     * @return the results of all the shards
+     */
+    public <T> List<T> onShardsOfSequentially(Collection<Long> ids, Function<List<Long>, List<T>> action) {
+        List<T> results = new ArrayList<>();
+        groupByShard(ids).forEach((shard, shardIds) -> results.addAll(onShard(shard, () -> action.apply(shardIds))));
+        return results;
+    }
+
+    /**
+     * Merge lists each sorted by the comparator into one sorted list
+     *
+     * @param sortedLists
+     * @param comparator
+     * @return
+     */
+    public static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> comparator) {
+        if (sortedLists.size() == 1) {
+            return sortedLists.get(0);
+        }
+        PriorityQueue<Cursor<T>> cursors = new PriorityQueue<>(sortedLists.size(),
+                (first, second) -> comparator.compare(first.head, second.head));
+        int size = 0;
+        for (List<T> list : sortedLists) {
+            size += list.size();
+            if (!list.isEmpty()) {
+                cursors.add(new Cursor<>(list.iterator()));
+            }
+        }
+        List<T> merged = new ArrayList<>(size);
+        while (!cursors.isEmpty()) {
+            Cursor<T> cursor = cursors.poll();
+            merged.add(cursor.head);
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static <T> List<T> join(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class Cursor<T> {
+        private final Iterator<T> iterator;
+        private T head;
+
+        private Cursor(Iterator<T> iterator) {
+            this.iterator = iterator;
+            this.head = iterator.next();
+        }
+
+        private boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            head = iterator.next();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.findar.test.sharding;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+
+/**
+ * Hibernate only manages the schema of the shard it is started on, the first one.
+ * This brings the schema of the other shards up to date whenever ddl-auto changes the schema.
+ */
+public class ShardSchemaIntegrator implements Integrator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardSchemaIntegrator.class);
+
+    private final int shardCount;
+
+    public ShardSchemaIntegrator(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        Object action = serviceRegistry.getService(ConfigurationService.class).getSettings().get(AvailableSettings.HBM2DDL_AUTO);
+        if (action == null || "none".equals(action) || "validate".equals(action)) {
+            return;
+        }
+        for (int shard = 1; shard < shardCount; shard++) {
+            LOGGER.info("Updating the schema of shard {}.", shard);
+            Integer previous = ShardContext.set(shard);
+            try {
+                new SchemaUpdate().execute(EnumSet.of(TargetType.DATABASE), metadata, serviceRegistry);
+            } finally {
+                ShardContext.restore(previous);
+            }
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        //Nothing to release
+    }
+}
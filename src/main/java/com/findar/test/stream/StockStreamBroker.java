@@ -0,0 +1,322 @@
+package com.findar.test.stream;
+
+import com.findar.test.dtos.StockChangeDto;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.StockChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Pushes stock changes to server-sent event subscribers of a set of book ids and/or categories.
+ * <p>
+ * Every subscriber has a bounded buffer of changes not sent yet, keyed by book id: a newer change
+ * of a book replaces the one waiting, so a subscriber only ever gets the latest value. Changes are
+ * ordered by their sequence, a change older than one already offered for the book is dropped. A subscriber
+ * whose buffer overflows, whose connection fails, or whose send blocks for longer than the send timeout
+ * is disconnected and has to subscribe again.
+ * Sending happens on a small pool of dispatcher threads, never on the thread that changed the stock.
+ * A dispatcher thread stuck in the send of a stalled client is replaced until the send returns,
+ * so stalled clients cannot hold up the others.
+ */
+@Component
+public class StockStreamBroker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockStreamBroker.class);
+
+    private static final int IDLE = 0;
+    private static final int SENDING = 1;
+    private static final int STALLED = 2;
+
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final long sendTimeoutMillis;
+    private final int dispatcherThreads;
+    private final ThreadPoolExecutor dispatcher;
+    private final ScheduledExecutorService watchdog;
+    //Dispatcher threads given up in a stalled send, guarded by this
+    private int stalledSends;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Long, Set<Subscriber>> subscribersById = new ConcurrentHashMap<>();
+    private final Map<Categories, Set<Subscriber>> subscribersByCategory = new EnumMap<>(Categories.class);
+
+    public StockStreamBroker(@Value("${bookstore.stock-stream.timeout-ms:1800000}") long timeoutMillis,
+                             @Value("${bookstore.stock-stream.buffer-size:1024}") int bufferSize,
+                             @Value("${bookstore.stock-stream.dispatcher-threads:4}") int dispatcherThreads,
+                             @Value("${bookstore.stock-stream.send-timeout-ms:10000}") long sendTimeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.bufferSize = bufferSize;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.dispatcherThreads = dispatcherThreads;
+        AtomicInteger threads = new AtomicInteger();
+        this.dispatcher = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "stock-stream-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-stream-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, sendTimeoutMillis / 4);
+        watchdog.scheduleAtFixedRate(this::checkSends, period, period, TimeUnit.MILLISECONDS);
+        for (Categories categories : Categories.values()) {
+            subscribersByCategory.put(categories, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        watchdog.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Subscribe to the stock changes of some books and categories.
+     *
+     * @param ids        books to follow
+     * @param categories categories to follow
+     * @param current    loads the current stock of the followed books, sent first
+     * @return the emitter of the subscription
+     */
+    public SseEmitter subscribe(Collection<Long> ids, Collection<Categories> categories,
+                                Function<Collection<Long>, List<StockChangeDto>> current) {
+        Set<Categories> followedCategories = EnumSet.noneOf(Categories.class);
+        followedCategories.addAll(categories);
+        Subscriber subscriber = new Subscriber(createEmitter(), new HashSet<>(ids), followedCategories);
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError(error -> unsubscribe(subscriber));
+        subscribers.add(subscriber);
+        subscriber.ids.forEach(id -> subscribersById.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(subscriber));
+        subscriber.categories.forEach(category -> subscribersByCategory.get(category).add(subscriber));
+        //Registered before loading the current values so no change is missed in between
+        if (!subscriber.ids.isEmpty()) {
+            current.apply(subscriber.ids).forEach(subscriber::offer);
+        }
+        return subscriber.emitter;
+    }
+
+    /**
+     * Hands a committed stock change to the subscribers of the book and of its category.
+     *
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        StockChangeDto change = StockChangeDto.builder()
+                .id(event.getBookId())
+                .categories(event.getCategories())
+                .totalCount(event.getAvailable())
+                .sequence(event.getSequence())
+                .build();
+        Set<Subscriber> byId = subscribersById.get(event.getBookId());
+        if (byId != null) {
+            byId.forEach(subscriber -> subscriber.offer(change));
+        }
+        if (event.getCategories() != null) {
+            subscribersByCategory.get(event.getCategories()).forEach(subscriber -> {
+                //Already offered when the subscriber follows the book too
+                if (!subscriber.ids.contains(event.getBookId())) {
+                    subscriber.offer(change);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return number of open subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    SseEmitter createEmitter() {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    //Gives up the sends blocked for longer than the send timeout, eg: on a client that stopped reading
+    private void checkSends() {
+        long now = System.nanoTime();
+        subscribers.forEach(subscriber -> {
+            if (subscriber.sendState.get() == SENDING
+                    && now - subscriber.sendStartedNanos > TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis)
+                    && subscriber.sendState.compareAndSet(SENDING, STALLED)) {
+                resizeDispatcher(1);
+                subscriber.disconnect("send blocked for more than " + sendTimeoutMillis + " ms");
+                subscriber.sender.interrupt();
+            }
+        });
+    }
+
+    //One more thread per stalled send, so as many threads as configured serve the other subscribers
+    private synchronized void resizeDispatcher(int stalledDelta) {
+        stalledSends += stalledDelta;
+        int size = dispatcherThreads + stalledSends;
+        if (size > dispatcher.getMaximumPoolSize()) {
+            dispatcher.setMaximumPoolSize(size);
+            dispatcher.setCorePoolSize(size);
+        } else {
+            dispatcher.setCorePoolSize(size);
+            dispatcher.setMaximumPoolSize(size);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        subscriber.ids.forEach(id -> subscribersById.computeIfPresent(id, (key, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        }));
+        subscriber.categories.forEach(category -> subscribersByCategory.get(category).remove(subscriber));
+    }
+
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Long> ids;
+        private final Set<Categories> categories;
+
+        //Latest change per book not sent yet, guarded by this
+        private final LinkedHashMap<Long, StockChangeDto> buffer = new LinkedHashMap<>();
+        //Sequence of the latest change offered per book, sent or not, guarded by this
+        private final Map<Long, Long> offeredSequences = new HashMap<>();
+        //Only the draining task sends to or completes the emitter, whose methods all lock it; guarded by this
+        private boolean draining;
+        private String disconnectReason;
+        private volatile boolean closed;
+
+        private final AtomicInteger sendState = new AtomicInteger(IDLE);
+        private volatile long sendStartedNanos;
+        private volatile Thread sender;
+
+        Subscriber(SseEmitter emitter, Set<Long> ids, Set<Categories> categories) {
+            this.emitter = emitter;
+            this.ids = ids;
+            this.categories = categories;
+        }
+
+        //Also the current values loaded at subscription, older than a change that arrived meanwhile
+        void offer(StockChangeDto change) {
+            if (closed) {
+                return;
+            }
+            boolean overflow;
+            boolean startDraining = false;
+            synchronized (this) {
+                Long offeredSequence = offeredSequences.get(change.getId());
+                if (offeredSequence != null && offeredSequence >= change.getSequence()) {
+                    return;
+                }
+                offeredSequences.put(change.getId(), change.getSequence());
+                buffer.put(change.getId(), change);
+                overflow = buffer.size() > bufferSize;
+                if (!overflow) {
+                    startDraining = !draining;
+                    draining = true;
+                }
+            }
+            if (overflow) {
+                disconnect("slow consumer, more than " + bufferSize + " books waiting");
+            } else if (startDraining) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        void drain() {
+            while (true) {
+                List<StockChangeDto> changes;
+                String reason;
+                synchronized (this) {
+                    reason = disconnectReason;
+                    if (reason == null && (closed || buffer.isEmpty())) {
+                        draining = false;
+                        return;
+                    }
+                    changes = new ArrayList<>(buffer.values());
+                    buffer.clear();
+                }
+                if (reason != null) {
+                    emitter.completeWithError(new IllegalStateException("Stock stream subscriber disconnected: " + reason));
+                    return;
+                }
+                for (StockChangeDto change : changes) {
+                    if (!send(change)) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        //False if the subscriber was disconnected
+        private boolean send(StockChangeDto change) {
+            sender = Thread.currentThread();
+            sendStartedNanos = System.nanoTime();
+            sendState.set(SENDING);
+            String failure = null;
+            try {
+                emitter.send(SseEmitter.event().name("stock").data(change));
+            } catch (IOException | IllegalStateException e) {
+                failure = String.valueOf(e.getMessage());
+            }
+            if (sendState.getAndSet(IDLE) == STALLED) {
+                //Given up by the watchdog, which disconnected the subscriber and replaced this thread
+                Thread.interrupted();
+                resizeDispatcher(-1);
+                return false;
+            }
+            if (failure != null) {
+                disconnect(failure);
+                return false;
+            }
+            return true;
+        }
+
+        //Completing the emitter is left to the draining task, started here if none is running
+        private void disconnect(String reason) {
+            boolean startDraining;
+            synchronized (this) {
+                if (disconnectReason != null) {
+                    return;
+                }
+                disconnectReason = reason;
+                buffer.clear();
+                startDraining = !draining;
+                draining = true;
+            }
+            LOGGER.debug("Disconnecting stock stream subscriber: {}", reason);
+            unsubscribe(this);
+            if (startDraining) {
+                dispatcher.execute(this::drain);
+            }
+        }
+    }
+}
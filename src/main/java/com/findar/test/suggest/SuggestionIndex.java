@@ -0,0 +1,263 @@
+package com.findar.test.suggest;
+
+import com.findar.test.dtos.SuggestionDto;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.CatalogChangedEvent;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Type-ahead suggestions over the titles and authors of the books, one {@link SuggestionTrie} per category.
+ * A prefix matches the start of any word of a title or author, case and accents ignored.
+ * Books are ranked by the copies sold, most sold first.
+ * <p>
+ * The index is loaded on startup and kept up to date from {@link CatalogChangedEvent}, which also
+ * follows the sales applied to the book table.
+ */
+@Component
+public class SuggestionIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SuggestionIndex.class);
+    //Longer prefixes are rarely typed, the start of a word is enough to find the book
+    private static final int MAX_KEY_LENGTH = 32;
+
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+    private final SalesLedger salesLedger;
+    private final int maxResults;
+
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Categories, SuggestionTrie> tries = new EnumMap<>(Categories.class);
+    private final SuggestionTrie uncategorized;
+    private final Comparator<Long> ranking = Comparator
+            .comparingLong((Long id) -> -popularity(id))
+            .thenComparing(Function.identity());
+
+    @Autowired
+    public SuggestionIndex(BookRepository bookRepository,
+                           ShardRouter shardRouter,
+                           SalesLedger salesLedger,
+                           @Value("${bookstore.suggest.max-results:10}") int maxResults) {
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+        this.salesLedger = salesLedger;
+        this.maxResults = maxResults;
+        for (Categories categories : Categories.values()) {
+            tries.put(categories, new SuggestionTrie(maxResults));
+        }
+        this.uncategorized = new SuggestionTrie(maxResults);
+    }
+
+    @PostConstruct
+    public void load() {
+        List<Book> books = new ArrayList<>();
+        //Shard after shard, scatter threads would wait for the beans still being created
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            books.addAll(shardRouter.onShard(shard, bookRepository::findAll));
+        }
+        index(books, Collections.emptySet());
+        LOGGER.info("Suggestion index loaded with {} books.", books.size());
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Best ranked books with a word of the title or author starting with the prefix
+     *
+     * @param prefix
+     * @param categories null for every category
+     * @param limit at most {@link #getMaxResults()}
+     * @return
+     */
+    public List<SuggestionDto> suggest(String prefix, Categories categories, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Long> ids = new LinkedHashSet<>();
+        if (categories != null) {
+            addAll(ids, tries.get(categories).top(normalized));
+        } else {
+            tries.values().forEach(trie -> addAll(ids, trie.top(normalized)));
+            addAll(ids, uncategorized.top(normalized));
+        }
+        return ids.stream()
+                .map(entries::get)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingLong((Entry entry) -> -entry.popularity).thenComparing(entry -> entry.id))
+                .limit(Math.min(limit, maxResults))
+                .map(entry -> SuggestionDto.builder()
+                        .id(entry.id)
+                        .title(entry.title)
+                        .author(entry.author)
+                        .categories(entry.categories)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Index the changed books again
+     *
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        List<Book> books = shardRouter.onShardsOf(event.getBookIds(), bookRepository::findAllById);
+        Set<Long> removed = new HashSet<>(event.getBookIds());
+        books.forEach(book -> removed.remove(book.getId()));
+        index(books, removed);
+    }
+
+    /**
+     * Add, update or remove books of the index
+     *
+     * @param books added or changed
+     * @param removedIds
+     */
+    synchronized void index(Collection<Book> books, Collection<Long> removedIds) {
+        if (entries.isEmpty()) {
+            load(books);
+            return;
+        }
+        for (Long id : removedIds) {
+            Entry old = entries.remove(id);
+            if (old != null) {
+                old.keys().forEach(key -> trieOf(old.categories).remove(key, id, ranking));
+            }
+        }
+        for (Book book : books) {
+            Entry entry = new Entry(book, salesLedger.getSoldCount(book.getId()));
+            Entry old = entries.put(entry.id, entry);
+            SuggestionTrie trie = trieOf(entry.categories);
+            Set<String> keys = entry.keys();
+            if (old == null) {
+                keys.forEach(key -> trie.add(key, entry.id, ranking));
+                continue;
+            }
+            SuggestionTrie oldTrie = trieOf(old.categories);
+            Set<String> oldKeys = old.keys();
+            for (String key : oldKeys) {
+                if (oldTrie != trie || !keys.contains(key)) {
+                    oldTrie.remove(key, entry.id, ranking);
+                }
+            }
+            for (String key : keys) {
+                if (oldTrie != trie || !oldKeys.contains(key)) {
+                    trie.add(key, entry.id, ranking);
+                } else if (old.popularity != entry.popularity) {
+                    trie.rerank(key, ranking);
+                }
+            }
+        }
+    }
+
+    //Ranking once after adding all the keys is much cheaper than ranking after each key
+    private void load(Collection<Book> books) {
+        for (Book book : books) {
+            Entry entry = new Entry(book, salesLedger.getSoldCount(book.getId()));
+            entries.put(entry.id, entry);
+            entry.keys().forEach(key -> trieOf(entry.categories).addUnranked(key, entry.id));
+        }
+        tries.values().forEach(trie -> trie.rerankAll(ranking));
+        uncategorized.rerankAll(ranking);
+    }
+
+    private SuggestionTrie trieOf(Categories categories) {
+        return categories == null ? uncategorized : tries.get(categories);
+    }
+
+    private long popularity(Long id) {
+        Entry entry = entries.get(id);
+        return entry == null ? 0 : entry.popularity;
+    }
+
+    private static void addAll(Set<Long> ids, long[] top) {
+        for (long id : top) {
+            ids.add(id);
+        }
+    }
+
+    //Lower case words of letters and digits separated by one space, accents removed
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            } else if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        int length = normalized.length();
+        return length > 0 && normalized.charAt(length - 1) == ' ' ? normalized.substring(0, length - 1) : normalized.toString();
+    }
+
+    //The text from the start of each of its words
+    private static void addKeys(Set<String> keys, String text) {
+        String normalized = normalize(text);
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                keys.add(normalized.substring(i, Math.min(normalized.length(), i + MAX_KEY_LENGTH)));
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Long id;
+        private final String title;
+        private final String author;
+        private final Categories categories;
+        private final long popularity;
+
+        private Entry(Book book, long popularity) {
+            this.id = book.getId();
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.categories = book.getCategories();
+            this.popularity = popularity;
+        }
+
+        //Worked out again when needed rather than kept for every book
+        private Set<String> keys() {
+            Set<String> keys = new HashSet<>();
+            addKeys(keys, title);
+            addKeys(keys, author);
+            return keys;
+        }
+    }
+}
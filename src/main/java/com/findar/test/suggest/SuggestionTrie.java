@@ -0,0 +1,323 @@
+package com.findar.test.suggest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Prefix trie of book ids, with chains of single children merged into one node labelled by the
+ * whole chain. Every node keeps the ids of the best ranked books below it, so the top matches of a
+ * prefix are read from the node the prefix ends in without visiting the subtree.
+ * <p>
+ * Children are kept in arrays sorted by their first character instead of maps to stay compact. Writers are
+ * serialized by the caller; readers need no lock as nodes are replaced, never relabelled in place.
+ */
+class SuggestionTrie {
+
+    private static final Node[] NO_NODES = new Node[0];
+    private static final long[] NO_IDS = new long[0];
+
+    private final Node root = new Node("");
+    private final int capacity;
+
+    SuggestionTrie(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Best ranked ids of the books with a key starting with the prefix
+     *
+     * @param prefix
+     * @return
+     */
+    long[] top(String prefix) {
+        Node node = root;
+        int matched = 0;
+        while (matched < prefix.length()) {
+            node = node.child(prefix.charAt(matched));
+            if (node == null) {
+                return NO_IDS;
+            }
+            String label = node.label;
+            int remaining = prefix.length() - matched;
+            if (remaining <= label.length()) {
+                //The prefix ends inside this node, all of its keys start with the prefix
+                return label.regionMatches(0, prefix, matched, remaining) ? node.top : NO_IDS;
+            }
+            if (!prefix.regionMatches(matched, label, 0, label.length())) {
+                return NO_IDS;
+            }
+            matched += label.length();
+        }
+        return node.top;
+    }
+
+    void add(String key, long id, Comparator<Long> ranking) {
+        rerank(insert(key, id), ranking);
+    }
+
+    /**
+     * Add without ranking, for loading many keys followed by {@link #rerankAll(Comparator)}
+     *
+     * @param key
+     * @param id
+     */
+    void addUnranked(String key, long id) {
+        insert(key, id);
+    }
+
+    void remove(String key, long id, Comparator<Long> ranking) {
+        List<Node> path = path(key);
+        if (path == null) {
+            return;
+        }
+        Node node = path.get(path.size() - 1);
+        node.terminals = without(node.terminals, id);
+        rerank(path, ranking);
+    }
+
+    /**
+     * Rank the nodes of the key again, after the rank of one of its books changed
+     *
+     * @param key
+     * @param ranking
+     */
+    void rerank(String key, Comparator<Long> ranking) {
+        List<Node> path = path(key);
+        if (path != null) {
+            rerank(path, ranking);
+        }
+    }
+
+    /**
+     * Rank every node again
+     *
+     * @param ranking
+     */
+    void rerankAll(Comparator<Long> ranking) {
+        rerankSubtree(root, ranking);
+    }
+
+    private List<Node> insert(String key, long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int matched = 0;
+        while (matched < key.length()) {
+            Node child = node.child(key.charAt(matched));
+            if (child == null) {
+                child = new Node(key.substring(matched));
+                node.children = with(node.children, child);
+                node = child;
+                path.add(node);
+                break;
+            }
+            int common = commonPrefix(child.label, key, matched);
+            if (common < child.label.length()) {
+                //Split the node, the part below the split becomes the only child of the part above
+                Node below = child.relabel(child.label.substring(common));
+                Node above = new Node(child.label.substring(0, common));
+                above.children = new Node[]{below};
+                above.top = below.top;
+                node.children = replace(node.children, above);
+                child = above;
+            }
+            node = child;
+            path.add(node);
+            matched += common;
+        }
+        if (!contains(node.terminals, id)) {
+            long[] terminals = Arrays.copyOf(node.terminals, node.terminals.length + 1);
+            terminals[node.terminals.length] = id;
+            node.terminals = terminals;
+        }
+        return path;
+    }
+
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int matched = 0;
+        while (matched < key.length()) {
+            node = node.child(key.charAt(matched));
+            if (node == null || !key.startsWith(node.label, matched)) {
+                return null;
+            }
+            path.add(node);
+            matched += node.label.length();
+        }
+        return path;
+    }
+
+    //Bottom-up: the ranking of a node is made of its own books and the rankings of its children
+    private void rerank(List<Node> path, Comparator<Long> ranking) {
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node node = path.get(depth);
+            if (depth > 0 && node.terminals.length == 0 && node.children.length <= 1) {
+                //Drop a node left empty, merge a node left with one child into the child
+                Node parent = path.get(depth - 1);
+                parent.children = node.children.length == 0
+                        ? without(parent.children, node.label.charAt(0))
+                        : replace(parent.children, node.children[0].relabel(node.label + node.children[0].label));
+                continue;
+            }
+            rank(node, ranking);
+        }
+    }
+    private void rerankSubtree(Node node, Comparator<Long> ranking) {
+        for (Node child : node.children) {
+            rerankSubtree(child, ranking);
+        }
+        rank(node, ranking);
+    }
+
+    private void rank(Node node, Comparator<Long> ranking) {
+        Node[] children = node.children;
+        if (node.terminals.length == 0 && children.length == 1) {
+            //Nothing to choose between, share the ranking of the child
+            node.top = children[0].top;
+            return;
+        }
+        if (children.length == 0 && node.terminals.length == 1) {
+            node.top = node.terminals;
+            return;
+        }
+        //The rankings of the children are sorted already, merge them with the books of the node
+        long[][] sources = new long[children.length + 1][];
+        sources[0] = Arrays.stream(node.terminals).boxed().sorted(ranking).mapToLong(Long::longValue).toArray();
+        for (int i = 0; i < children.length; i++) {
+            sources[i + 1] = children[i].top;
+        }
+        int[] positions = new int[sources.length];
+        long[] top = new long[capacity];
+        int size = 0;
+        while (size < capacity) {
+            int best = -1;
+            for (int i = 0; i < sources.length; i++) {
+                if (positions[i] < sources[i].length
+                        && (best < 0 || ranking.compare(sources[i][positions[i]], sources[best][positions[best]]) < 0)) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            long id = sources[best][positions[best]++];
+            //A book with several keys below the node is found in several children
+            if (!contains(top, size, id)) {
+                top[size++] = id;
+            }
+        }
+        node.top = size == capacity ? top : Arrays.copyOf(top, size);
+    }
+
+    private static boolean contains(long[] ids, long id) {
+        return contains(ids, ids.length, id);
+    }
+
+    private static boolean contains(long[] ids, int length, long id) {
+        for (int i = 0; i < length; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] without(long[] ids, long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                long[] remaining = new long[ids.length - 1];
+                System.arraycopy(ids, 0, remaining, 0, i);
+                System.arraycopy(ids, i + 1, remaining, i, ids.length - i - 1);
+                return remaining.length == 0 ? NO_IDS : remaining;
+            }
+        }
+        return ids;
+    }
+
+    private static int commonPrefix(String label, String key, int from) {
+        int length = Math.min(label.length(), key.length() - from);
+        int common = 0;
+        while (common < length && label.charAt(common) == key.charAt(from + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    private static int indexOf(Node[] nodes, char key) {
+        int low = 0;
+        int high = nodes.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleKey = nodes[middle].label.charAt(0);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static Node[] with(Node[] nodes, Node node) {
+        int index = -indexOf(nodes, node.label.charAt(0)) - 1;
+        Node[] newNodes = new Node[nodes.length + 1];
+        System.arraycopy(nodes, 0, newNodes, 0, index);
+        newNodes[index] = node;
+        System.arraycopy(nodes, index, newNodes, index + 1, nodes.length - index);
+        return newNodes;
+    }
+
+    //Replace the node starting with the same character
+    private static Node[] replace(Node[] nodes, Node node) {
+        Node[] newNodes = nodes.clone();
+        newNodes[indexOf(nodes, node.label.charAt(0))] = node;
+        return newNodes;
+    }
+
+    private static Node[] without(Node[] nodes, char key) {
+        int index = indexOf(nodes, key);
+        if (index < 0) {
+            return nodes;
+        }
+        if (nodes.length == 1) {
+            return NO_NODES;
+        }
+        Node[] newNodes = new Node[nodes.length - 1];
+        System.arraycopy(nodes, 0, newNodes, 0, index);
+        System.arraycopy(nodes, index + 1, newNodes, index, nodes.length - index - 1);
+        return newNodes;
+    }
+
+    private static final class Node {
+        private final String label;
+        private volatile Node[] children = NO_NODES;
+        private volatile long[] top = NO_IDS;
+        //Ids of the books with a key ending on this node, only used by writers
+        private long[] terminals = NO_IDS;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        //Same node under another label, the old node stays valid for readers still on it
+        private Node relabel(String newLabel) {
+            Node node = new Node(newLabel);
+            node.children = children;
+            node.top = top;
+            node.terminals = terminals;
+            return node;
+        }
+
+        private Node child(char key) {
+            Node[] nodes = children;
+            int index = indexOf(nodes, key);
+            return index >= 0 ? nodes[index] : null;
+        }
+    }
+}
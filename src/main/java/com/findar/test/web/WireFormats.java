@@ -0,0 +1,61 @@
+package com.findar.test.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * Body encodings served by the API: JSON by default, CBOR for clients that ask for it.
+ * Both mappers share the application's Jackson settings so they carry the same fields.
+ */
+@Component
+public class WireFormats {
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+
+    public WireFormats(ObjectMapper jsonMapper, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.jsonMapper = jsonMapper;
+        this.cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+    }
+
+    public ObjectMapper getCborMapper() {
+        return cborMapper;
+    }
+
+    /**
+     * Picks the encoding for an Accept header, JSON unless CBOR is preferred.
+     *
+     * @param accept value of the Accept header, may be null
+     * @return application/json or application/cbor
+     */
+    public MediaType negotiate(String accept) {
+        if (!StringUtils.hasText(accept)) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptedTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.includes(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (acceptedType.includes(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * @param mediaType application/json or application/cbor
+     * @return mapper writing that encoding
+     */
+    public ObjectMapper mapperFor(MediaType mediaType) {
+        return MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType) ? cborMapper : jsonMapper;
+    }
+}
@@ -0,0 +1,110 @@
+package com.findar.test.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.findar.test.cache.HotBookCache;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.serviceimpl.BookStoreServiceImpl;
+import com.findar.test.sharding.ShardRouter;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Throughput of {@link BookStoreServiceImpl#addBook(Long, int)} with service logging
+ * disabled, written synchronously, and written through the {@link AsyncAppender}
+ * configured in logback-spring.xml. Output is encoded but discarded so the numbers
+ * reflect formatting and appender contention, not the speed of the terminal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ServiceLoggingBenchmark {
+
+    @Param({"off", "sync", "async"})
+    public String logging;
+
+    private BookStoreServiceImpl service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+        ch.qos.logback.classic.Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.INFO);
+        if (!"off".equals(logging)) {
+            root.addAppender(appender(context));
+            context.getLogger(BookStoreServiceImpl.class).setLevel(ch.qos.logback.classic.Level.DEBUG);
+        }
+
+        BookRepository bookRepository = mock(BookRepository.class, withSettings().stubOnly());
+        Book book = Book.builder().id(1L).title("title").author("author")
+                .categories(Categories.DRAMA).price(10).totalCount(5).build();
+        when(bookRepository.findById(anyLong())).thenReturn(Optional.of(book));
+        when(bookRepository.save(any(Book.class))).thenReturn(book);
+        when(bookRepository.incrementTotalCount(anyLong(), anyInt())).thenReturn(1);
+        service = new BookStoreServiceImpl(bookRepository, new ModelMapper(), event -> {
+        }, mock(SalesLedger.class, withSettings().stubOnly()), new HotBookCache(100),
+                new ShardRouter(1, 1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+    }
+
+    @Benchmark
+    public void addBook() {
+        service.addBook(1L, 1);
+    }
+
+    private Appender<ILoggingEvent> appender(LoggerContext context) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("ts=%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} level=%level thread=%thread "
+                + "logger=%logger{36} requestId=%X{requestId:--} msg=%msg%n%ex");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> sink = new OutputStreamAppender<>();
+        sink.setContext(context);
+        sink.setName("SINK");
+        sink.setEncoder(encoder);
+        sink.setOutputStream(OutputStream.nullOutputStream());
+        sink.start();
+        if ("sync".equals(logging)) {
+            return sink;
+        }
+
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(context);
+        async.setName("ASYNC_SINK");
+        async.setQueueSize(8192);
+        async.setDiscardingThreshold(0);
+        async.setNeverBlock(true);
+        async.addAppender(sink);
+        async.start();
+        return async;
+    }
+}
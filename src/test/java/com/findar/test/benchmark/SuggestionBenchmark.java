@@ -0,0 +1,72 @@
+package com.findar.test.benchmark;
+
+import com.findar.test.dtos.SuggestionDto;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.sharding.ShardRouter;
+import com.findar.test.suggest.SuggestionIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Latency of a type-ahead lookup in {@link SuggestionIndex}, for short and longer prefixes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SuggestionBenchmark {
+
+    private static final String[] WORDS = {"lord", "rings", "night", "river", "house", "garden", "winter",
+            "shadow", "city", "glass", "storm", "empire", "letters", "silent", "ocean", "mountain"};
+
+    @Param({"100000"})
+    public int books;
+
+    @Param({"l", "ri", "shadow of"})
+    public String prefix;
+
+    private SuggestionIndex index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<Book> catalog = new ArrayList<>(books);
+        Categories[] categories = Categories.values();
+        for (int i = 0; i < books; i++) {
+            catalog.add(Book.builder()
+                    .id((long) i)
+                    .title(WORDS[i % WORDS.length] + " of the " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i)
+                    .author("Author " + (i % 997))
+                    .categories(categories[i % categories.length])
+                    .build());
+        }
+        BookRepository bookRepository = mock(BookRepository.class, withSettings().stubOnly());
+        when(bookRepository.findAll()).thenReturn(catalog);
+        SalesLedger salesLedger = mock(SalesLedger.class, withSettings().stubOnly());
+        when(salesLedger.getSoldCount(anyLong())).thenAnswer(invocation -> (invocation.<Long>getArgument(0) * 31) % 1000);
+        index = new SuggestionIndex(bookRepository, new ShardRouter(1, 1), salesLedger, 10);
+        index.load();
+    }
+
+    @Benchmark
+    public List<SuggestionDto> suggestAnyCategory() {
+        return index.suggest(prefix, null, 10);
+    }
+
+    @Benchmark
+    public List<SuggestionDto> suggestOneCategory() {
+        return index.suggest(prefix, Categories.FICTION, 10);
+    }
+}
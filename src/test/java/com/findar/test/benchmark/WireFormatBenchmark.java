@@ -0,0 +1,68 @@
+package com.findar.test.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.findar.test.dtos.BookDto;
+import com.findar.test.enums.Categories;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of a bulk listing of {@link BookDto} as JSON and as CBOR.
+ * The encoded size of both formats is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<BookDto>> BOOK_LIST = new TypeReference<List<BookDto>>() {
+    };
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    @Param({"1000"})
+    public int books;
+
+    private ObjectMapper mapper;
+    private List<BookDto> bookDtos;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mapper = "cbor".equals(format) ? new ObjectMapper(new CBORFactory()) : new ObjectMapper();
+        bookDtos = new ArrayList<>(books);
+        Categories[] categories = Categories.values();
+        for (int i = 0; i < books; i++) {
+            bookDtos.add(BookDto.builder()
+                    .id(9780000000000L + i)
+                    .title("Book title number " + i)
+                    .author("Author " + (i % 97))
+                    .categories(categories[i % categories.length])
+                    .price(5 + (i % 40) * 0.25f)
+                    .totalCount(i % 50)
+                    .build());
+        }
+        encoded = mapper.writeValueAsBytes(bookDtos);
+        System.out.println(format + " listing of " + books + " books: " + encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(bookDtos);
+    }
+
+    @Benchmark
+    public List<BookDto> decode() throws IOException {
+        return mapper.readValue(encoded, BOOK_LIST);
+    }
+}
@@ -0,0 +1,134 @@
+package com.findar.test.bestseller;
+
+import com.findar.test.dtos.BestSellerDto;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.SalesAppliedEvent;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SaleRecord;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.sharding.ShardRouter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class BestSellerBoardTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+
+    private final ShardRouter shardRouter = new ShardRouter(1, 1);
+
+    private final List<SaleRecord> journal = new ArrayList<>();
+
+    @Test
+    public void testGetBestSellers_Given_MoreBooksThanCounters_Then_HeavyHittersAreRankedFirst() throws Exception {
+        //Arrange
+        for (int i = 0; i < 200; i++) {
+            sale(1L, Categories.DRAMA, 1);
+            sale(1000L + i, Categories.POETRY, 1);
+            if (i % 2 == 0) {
+                sale(2L, Categories.DRAMA, 1);
+            }
+        }
+        BestSellerBoard sut = board(8);
+
+        //Act
+        sut.load();
+        List<BestSellerDto> bestSellers = sut.getBestSellers(null, 2);
+
+        //Assert
+        assertEquals(Arrays.asList(1L, 2L), bestSellers.stream().map(BestSellerDto::getId).collect(Collectors.toList()));
+        assertTrue(bestSellers.get(0).getSold() >= 200);
+        assertTrue(bestSellers.get(0).getSold() - bestSellers.get(0).getMaxOverestimate() <= 200);
+        assertTrue(bestSellers.get(1).getSold() >= 100);
+        assertTrue(bestSellers.get(1).getSold() - bestSellers.get(1).getMaxOverestimate() <= 100);
+    }
+
+    @Test
+    public void testGetBestSellers_Given_Category_Then_OnlyBooksOfTheCategoryAreRanked() throws Exception {
+        //Arrange
+        sale(1L, Categories.DRAMA, 5);
+        sale(2L, Categories.FICTION, 9);
+        sale(3L, Categories.DRAMA, 7);
+        BestSellerBoard sut = board(10);
+        sut.load();
+
+        //Act
+        List<BestSellerDto> bestSellers = sut.getBestSellers(Categories.DRAMA, 10);
+
+        //Assert
+        assertEquals(Arrays.asList(3L, 1L), bestSellers.stream().map(BestSellerDto::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(7L, 5L), bestSellers.stream().map(BestSellerDto::getSold).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testLoad_Given_Checkpoint_Then_OnlySalesMadeSinceAreCountedAgain() throws Exception {
+        //Arrange
+        sale(1L, Categories.DRAMA, 2);
+        sale(2L, Categories.DRAMA, 3);
+        BestSellerBoard written = board(10);
+        written.load();
+        written.write();
+        sale(1L, Categories.DRAMA, 4);
+        BestSellerBoard sut = board(10);
+
+        //Act
+        sut.load();
+
+        //Assert
+        List<BestSellerDto> bestSellers = sut.getBestSellers(null, 10);
+        assertEquals(Arrays.asList(1L, 2L), bestSellers.stream().map(BestSellerDto::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(6L, 3L), bestSellers.stream().map(BestSellerDto::getSold).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testOnSalesApplied_Given_SalesAlreadyCounted_Then_OnlyNewSalesAreCounted() throws Exception {
+        //Arrange
+        sale(1L, Categories.DRAMA, 2);
+        BestSellerBoard sut = board(10);
+        sut.load();
+        SaleRecord newSale = sale(1L, Categories.DRAMA, 3);
+
+        //Act
+        sut.onSalesApplied(new SalesAppliedEvent(Arrays.asList(journal.get(0), newSale)));
+
+        //Assert
+        assertEquals(5, sut.getBestSellers(Categories.DRAMA, 1).get(0).getSold());
+        assertEquals(Collections.emptyList(), sut.getBestSellers(Categories.FICTION, 1));
+    }
+
+    //A board reading the sales of the journal list
+    private BestSellerBoard board(int capacity) throws Exception {
+        SalesLedger salesLedger = mock(SalesLedger.class);
+        doAnswer(invocation -> {
+            long from = invocation.getArgument(0);
+            Consumer<SaleRecord> consumer = invocation.getArgument(1);
+            journal.stream().filter(sale -> sale.getSequence() >= from).forEach(consumer);
+            return null;
+        }).when(salesLedger).forEachSale(anyLong(), any());
+        String file = folder.getRoot().toPath().resolve("best-sellers.checkpoint").toString();
+        return new BestSellerBoard(bookRepository, shardRouter, salesLedger, file, capacity);
+    }
+
+    private SaleRecord sale(long bookId, Categories categories, int quantity) {
+        SaleRecord sale = new SaleRecord(journal.size(), bookId, quantity, 10f, categories, 0L);
+        journal.add(sale);
+        return sale;
+    }
+}
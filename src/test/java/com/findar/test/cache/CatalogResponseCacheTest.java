@@ -0,0 +1,96 @@
+package com.findar.test.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.findar.test.enums.BookField;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.CatalogChangedEvent;
+import com.findar.test.web.WireFormats;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class CatalogResponseCacheTest {
+
+    private final CatalogResponseCache sut = new CatalogResponseCache(
+            new WireFormats(new ObjectMapper(), Jackson2ObjectMapperBuilder.json()), true, 16);
+
+    @Test
+    public void testGetAllBooks_Given_CachedListing_Then_LoaderIsNotCalledAgain() {
+        //Arrange
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Object> loader = () -> {
+            loads.incrementAndGet();
+            return Collections.singletonList("book");
+        };
+
+        //Act
+        CachedResponse first = sut.getAllBooks(MediaType.APPLICATION_JSON, loader);
+        CachedResponse second = sut.getAllBooks(MediaType.APPLICATION_JSON, loader);
+
+        //Assert
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals("[\"book\"]", new String(first.getBody()));
+    }
+
+    @Test
+    public void testGetAllBooks_Given_OtherFields_Then_ListingsAreCachedApart() {
+        //Arrange
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Object> loader = () -> Collections.singletonList(loads.incrementAndGet());
+
+        //Act
+        CachedResponse all = sut.getAllBooks(MediaType.APPLICATION_JSON, loader);
+        CachedResponse titles = sut.getAllBooks(MediaType.APPLICATION_JSON, BookField.parse("title"), loader);
+        CachedResponse titlesAgain = sut.getAllBooks(MediaType.APPLICATION_JSON, BookField.parse("title"), loader);
+        CachedResponse prices = sut.getAllBooks(MediaType.APPLICATION_JSON, BookField.parse("price"), loader);
+
+        //Assert
+        assertEquals("[1]", new String(all.getBody()));
+        assertEquals("[2]", new String(titles.getBody()));
+        assertSame(titles, titlesAgain);
+        assertEquals("[3]", new String(prices.getBody()));
+    }
+
+    @Test
+    public void testOnCatalogChanged_Then_ListingsAreReloaded() {
+        //Arrange
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Object> loader = () -> Collections.singletonList(loads.incrementAndGet());
+        sut.getBooksByCategories(MediaType.APPLICATION_JSON, Categories.DRAMA, loader);
+
+        //Act
+        sut.onCatalogChanged(CatalogChangedEvent.of(1L));
+        CachedResponse reloaded = sut.getBooksByCategories(MediaType.APPLICATION_JSON, Categories.DRAMA, loader);
+
+        //Assert
+        assertEquals("[2]", new String(reloaded.getBody()));
+    }
+
+    @Test
+    public void testGetAllBooks_Given_SmallBody_Then_NoGzipBodyIsKept() {
+        //Act
+        CachedResponse small = sut.getAllBooks(MediaType.APPLICATION_JSON, Collections::emptyList);
+
+        //Assert
+        assertNull(small.getGzipBody());
+    }
+
+    @Test
+    public void testGetAllBooks_Given_JsonAndCbor_Then_EachFormatIsCachedSeparately() {
+        //Act
+        CachedResponse json = sut.getAllBooks(MediaType.APPLICATION_JSON, () -> Collections.singletonList(1));
+        CachedResponse cbor = sut.getAllBooks(MediaType.APPLICATION_CBOR, () -> Collections.singletonList(1));
+
+        //Assert
+        assertEquals("[1]", new String(json.getBody()));
+        //CBOR array of one element holding the unsigned integer 1
+        assertArrayEquals(new byte[]{(byte) 0x81, 0x01}, cbor.getBody());
+    }
+}
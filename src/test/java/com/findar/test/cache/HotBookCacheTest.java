@@ -0,0 +1,56 @@
+package com.findar.test.cache;
+
+import com.findar.test.entities.Book;
+import com.findar.test.events.CatalogChangedEvent;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class HotBookCacheTest {
+
+    private final HotBookCache sut = new HotBookCache(4);
+
+    @Test
+    public void testGet_Given_BookChanged_Then_BookIsReloadedOnce() {
+        //Arrange
+        AtomicInteger loads = new AtomicInteger();
+        sut.get(1L, id -> load(id, loads));
+        sut.get(1L, id -> load(id, loads));
+
+        //Act
+        sut.onCatalogChanged(CatalogChangedEvent.of(1L));
+        Optional<Book> reloaded = sut.get(1L, id -> load(id, loads));
+        sut.get(1L, id -> load(id, loads));
+
+        //Assert
+        assertEquals(2, loads.get());
+        assertEquals(2, reloaded.get().getTotalCount());
+        assertEquals(4, sut.getHottest(1).get(0).getHits());
+    }
+
+    @Test
+    public void testTrim_Then_LeastAccessedBooksAreDropped() {
+        //Arrange
+        AtomicInteger loads = new AtomicInteger();
+        for (long id = 1; id <= 4; id++) {
+            for (int hit = 0; hit < id * 2; hit++) {
+                sut.get(id, key -> load(key, loads));
+            }
+        }
+
+        //Act
+        sut.trim();
+
+        //Assert
+        assertEquals(3, sut.getHottest(10).size());
+        assertEquals(4L, (long) sut.getHottest(10).get(0).getBook().getId());
+        assertEquals(4, sut.getHottest(10).get(0).getHits());
+    }
+
+    private static Optional<Book> load(Long id, AtomicInteger loads) {
+        return Optional.of(Book.builder().id(id).title("title").totalCount(loads.incrementAndGet()).build());
+    }
+}
@@ -0,0 +1,92 @@
+package com.findar.test.cache;
+
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.repositories.BookVersion;
+import com.findar.test.sharding.ShardRouter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WarmStartSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+
+    private final ShardRouter shardRouter = new ShardRouter(1, 1);
+
+    @Test
+    public void testLoad_Given_SnapshotWritten_Then_OnlyBooksWithSameVersionAreLoaded() {
+        //Arrange
+        String file = folder.getRoot().toPath().resolve("hot.snapshot").toString();
+        HotBookCache written = new HotBookCache(100);
+        written.put(book(1L, 3L, "Hot"), 10);
+        written.put(book(2L, 5L, null), 4);
+        new WarmStartSnapshot(written, bookRepository, shardRouter, file, 100, 60).write();
+        when(bookRepository.findVersionsByIdIn(anyCollection()))
+                .thenReturn(Arrays.asList(version(1L, 3L), version(2L, 6L)));
+        HotBookCache loaded = new HotBookCache(100);
+
+        //Act
+        new WarmStartSnapshot(loaded, bookRepository, shardRouter, file, 100, 60).load();
+
+        //Assert
+        List<HotBook> hottest = loaded.getHottest(10);
+        assertEquals(1, hottest.size());
+        assertEquals("Hot", hottest.get(0).getBook().getTitle());
+        assertEquals(Categories.THRILLER, hottest.get(0).getBook().getCategories());
+        assertEquals(10, hottest.get(0).getHits());
+        Optional<Book> book = loaded.get(1L, id -> {
+            throw new AssertionError("Book should be served from memory.");
+        });
+        assertEquals(12, book.get().getTotalCount());
+    }
+
+    @Test
+    public void testLoad_Given_SnapshotTooOld_Then_NothingIsLoaded() {
+        //Arrange
+        String file = folder.getRoot().toPath().resolve("hot.snapshot").toString();
+        HotBookCache written = new HotBookCache(100);
+        written.put(book(1L, 3L, "Hot"), 10);
+        new WarmStartSnapshot(written, bookRepository, shardRouter, file, 100, 60).write();
+        HotBookCache loaded = new HotBookCache(100);
+
+        //Act
+        new WarmStartSnapshot(loaded, bookRepository, shardRouter, file, 100, -1).load();
+
+        //Assert
+        assertFalse(loaded.getHottest(10).iterator().hasNext());
+    }
+
+    private static Book book(Long id, long version, String title) {
+        return Book.builder().id(id).version(version).title(title).author("author")
+                .categories(Categories.THRILLER).price(9.5f).totalCount(12).build();
+    }
+
+    private static BookVersion version(Long id, long version) {
+        return new BookVersion() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public long getVersion() {
+                return version;
+            }
+        };
+    }
+}
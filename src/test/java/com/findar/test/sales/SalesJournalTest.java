@@ -0,0 +1,183 @@
+package com.findar.test.sales;
+
+import com.findar.test.enums.Categories;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SalesJournalTest {
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOpen_Given_RecordsAppended_Then_RecordsAreReplayedAcrossSegments() throws IOException {
+        //Arrange
+        Path directory = folder.getRoot().toPath();
+        try (SalesJournal journal = open(directory, new ArrayList<>())) {
+            for (int i = 0; i < 6; i++) {
+                journal.awaitDurable(journal.append(100 + i, i + 1, 9.5f, Categories.DRAMA).getSequence());
+            }
+        }
+
+        //Act
+        List<SaleRecord> replayed = new ArrayList<>();
+        try (SalesJournal journal = open(directory, replayed)) {
+            journal.awaitDurable(journal.append(200, 1, 1f, Categories.POETRY).getSequence());
+        }
+
+        //Assert
+        assertEquals(6, replayed.size());
+        assertEquals(105, replayed.get(5).getBookId());
+        assertEquals(6, replayed.get(5).getQuantity());
+        assertEquals(9.5f, replayed.get(5).getPrice(), 0f);
+        assertEquals(Categories.DRAMA, replayed.get(5).getCategories());
+        List<SaleRecord> afterAppend = new ArrayList<>();
+        open(directory, afterAppend).close();
+        assertEquals(7, afterAppend.size());
+        assertEquals(6, afterAppend.get(6).getSequence());
+    }
+
+    @Test
+    public void testForEachDurable_Then_RecordsFromTheSequenceOnAreReadAcrossSegments() throws IOException {
+        //Arrange
+        Path directory = folder.getRoot().toPath();
+        try (SalesJournal journal = open(directory, new ArrayList<>())) {
+            for (int i = 0; i < 10; i++) {
+                journal.awaitDurable(journal.append(100 + i, 1, 2f, Categories.FICTION).getSequence());
+            }
+
+            //Act
+            List<SaleRecord> read = new ArrayList<>();
+            journal.forEachDurable(3, read::add);
+
+            //Assert
+            assertEquals(7, read.size());
+            assertEquals(3, read.get(0).getSequence());
+            assertEquals(103, read.get(0).getBookId());
+            assertEquals(109, read.get(6).getBookId());
+            assertEquals(Categories.FICTION, read.get(6).getCategories());
+        }
+    }
+
+    @Test
+    public void testMarkApplied_Then_OnlyLaterRecordsAreUnappliedAfterReopen() throws IOException {
+        //Arrange
+        Path directory = folder.getRoot().toPath();
+        try (SalesJournal journal = open(directory, new ArrayList<>())) {
+            SaleRecord last = null;
+            for (int i = 0; i < 5; i++) {
+                last = journal.append(i, 1, 1f, Categories.ACTION);
+            }
+            journal.awaitDurable(last.getSequence());
+
+            //Act
+            List<SaleRecord> drained = journal.drainDurable(3);
+            journal.markApplied(drained.get(drained.size() - 1).getSequence() + 1);
+        }
+
+        //Assert
+        try (SalesJournal journal = open(directory, new ArrayList<>())) {
+            List<SaleRecord> unapplied = journal.unappliedRecords();
+            assertEquals(2, unapplied.size());
+            assertEquals(3, unapplied.get(0).getSequence());
+        }
+    }
+
+    @Test
+    public void testOpen_Given_TornRecord_Then_ReplayStopsBeforeIt() throws IOException {
+        //Arrange
+        Path directory = folder.getRoot().toPath();
+        try (SalesJournal journal = open(directory, new ArrayList<>())) {
+            journal.append(1, 1, 1f, Categories.FICTION);
+            journal.awaitDurable(journal.append(2, 1, 1f, Categories.FICTION).getSequence());
+        }
+        try (RandomAccessFile segment = new RandomAccessFile(
+                directory.resolve("sales-0000000000000000.journal").toFile(), "rw")) {
+            segment.seek(SalesJournal.RECORD_SIZE + 3);
+            segment.write(0x7f);
+        }
+
+        //Act
+        List<SaleRecord> replayed = new ArrayList<>();
+        open(directory, replayed).close();
+
+        //Assert
+        assertEquals(1, replayed.size());
+        assertEquals(1, replayed.get(0).getBookId());
+    }
+
+    @Test
+    public void testOpen_Given_OtherRecordsPerSegment_Then_ThrowIllegalStateExceptionAndKeepSegments() throws IOException {
+        //Arrange
+        Path directory = folder.getRoot().toPath();
+        try (SalesJournal journal = open(directory, new ArrayList<>())) {
+            for (int i = 0; i < 6; i++) {
+                journal.awaitDurable(journal.append(100 + i, 1, 1f, Categories.DRAMA).getSequence());
+            }
+        }
+
+        //Act
+        try {
+            SalesJournal.open(directory, RECORDS_PER_SEGMENT * 2, 0, record -> {
+            }).close();
+            fail("Journal opened with another number of records per segment");
+        } catch (IllegalStateException e) {
+            //Assert
+            assertEquals("Sales journal in " + directory + " has 4 records per segment, not 8. "
+                    + "Set bookstore.sales-journal.records-per-segment back to 4.", e.getMessage());
+        }
+        List<SaleRecord> replayed = new ArrayList<>();
+        open(directory, replayed).close();
+        assertEquals(6, replayed.size());
+    }
+
+    @Test
+    public void testAwaitDurable_Given_ConcurrentAppends_Then_AllRecordsAreDurable() throws Exception {
+        //Arrange
+        Path directory = folder.getRoot().toPath();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (SalesJournal journal = open(directory, new ArrayList<>())) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                long bookId = i;
+                futures.add(executor.submit(() -> {
+                    journal.awaitDurable(journal.append(bookId, 1, 1f, Categories.OTHERS).getSequence());
+                    return null;
+                }));
+            }
+
+            //Act
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            //Assert
+            assertEquals(200, journal.drainDurable(1000).size());
+        } finally {
+            executor.shutdown();
+        }
+        List<SaleRecord> replayed = new ArrayList<>();
+        open(directory, replayed).close();
+        assertEquals(200, replayed.size());
+        assertTrue(replayed.stream().allMatch(record -> record.getCategories() == Categories.OTHERS));
+    }
+
+    private SalesJournal open(Path directory, List<SaleRecord> replayed) throws IOException {
+        return SalesJournal.open(directory, RECORDS_PER_SEGMENT, 0, replayed::add);
+    }
+}
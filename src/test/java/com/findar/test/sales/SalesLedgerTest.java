@@ -0,0 +1,165 @@
+package com.findar.test.sales;
+
+import com.findar.test.cache.HotBookCache;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.SalesAppliedEvent;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sharding.ShardRouter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class SalesLedgerTest {
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private BookRepository bookRepository;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    private final HotBookCache hotBookCache = new HotBookCache(100);
+
+    private SalesLedger sut;
+
+    @Before
+    public void setup() throws IOException {
+        bookRepository = mock(BookRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        //Three sales of book 1 durable in the journal, never marked as applied
+        try (SalesJournal journal = SalesJournal.open(folder.getRoot().toPath(), RECORDS_PER_SEGMENT, 0, record -> {
+        })) {
+            for (int i = 0; i < 3; i++) {
+                journal.awaitDurable(journal.append(1L, 2, 9.5f, Categories.DRAMA).getSequence());
+            }
+        }
+        sut = new SalesLedger(bookRepository, new ShardRouter(1, 1), eventPublisher, hotBookCache,
+                folder.getRoot().getPath(), RECORDS_PER_SEGMENT, 0, 100, 5);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        sut.stop();
+    }
+
+    @Test
+    public void testStart_Given_SalesPartlyAppliedBeforeACrash_Then_OnlyTheOthersAreApplied() throws Exception {
+        //Arrange
+        when(bookRepository.findMaxSalesAppliedUpTo()).thenReturn(2L);
+        when(bookRepository.findSalesAppliedUpTo(1L)).thenReturn(Optional.of(2L));
+        when(bookRepository.decrementTotalCount(1L, 2, 2L, 3L)).thenReturn(1);
+
+        //Act
+        sut.start();
+        awaitApplied(1L);
+
+        //Assert
+        verify(bookRepository).decrementTotalCount(1L, 2, 2L, 3L);
+        verify(bookRepository, never()).skipSales(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testStart_Given_CountLoweredBelowTheSales_Then_SalesAreSkipped() throws Exception {
+        //Arrange
+        when(bookRepository.findSalesAppliedUpTo(1L)).thenReturn(Optional.of(0L));
+        when(bookRepository.decrementTotalCount(1L, 6, 0L, 3L)).thenReturn(0);
+
+        //Act
+        sut.start();
+        awaitApplied(1L);
+
+        //Assert
+        verify(bookRepository).skipSales(1L, 0L, 3L);
+    }
+
+    @Test
+    public void testStart_Given_SalesAllAppliedBeforeACrash_Then_BookIsNotDecrementedAgain() throws Exception {
+        //Arrange
+        when(bookRepository.findMaxSalesAppliedUpTo()).thenReturn(3L);
+        when(bookRepository.findSalesAppliedUpTo(1L)).thenReturn(Optional.of(3L));
+
+        //Act
+        sut.start();
+        awaitApplied(1L);
+
+        //Assert
+        verify(bookRepository, never()).decrementTotalCount(anyLong(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testStart_Given_BookTableAheadOfTheJournal_Then_ThrowIllegalStateException() throws Exception {
+        //Arrange
+        when(bookRepository.findMaxSalesAppliedUpTo()).thenReturn(5L);
+        thrown.expect(IllegalStateException.class);
+        thrown.expectMessage("Sales up to 5 are applied to shard 0");
+
+        //Act
+        sut.start();
+    }
+
+    @Test
+    public void testGetAvailable_Given_CachedBookAndSalesApplied_Then_AppliedSalesAreDeductedBeforeTheBatchEnds() throws Exception {
+        //Arrange
+        AtomicInteger totalCount = new AtomicInteger(10);
+        when(bookRepository.findSalesAppliedUpTo(1L)).thenReturn(Optional.of(0L));
+        when(bookRepository.decrementTotalCount(1L, 6, 0L, 3L)).thenAnswer(invocation -> {
+            totalCount.addAndGet(-6);
+            return 1;
+        });
+        //Read on the applier thread once the sales are applied, before the batch publishes its catalog change
+        AtomicInteger availableBeforeBatchEnd = new AtomicInteger(-1);
+        CountDownLatch applied = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            availableBeforeBatchEnd.set(available(totalCount));
+            applied.countDown();
+            return null;
+        }).when(eventPublisher).publishEvent(any(SalesAppliedEvent.class));
+        hotBookCache.put(Book.builder().id(1L).totalCount(10).build(), 1);
+
+        //Act
+        sut.start();
+
+        //Assert
+        assertTrue("Sales were not applied in time", applied.await(10, TimeUnit.SECONDS));
+        assertEquals(4, availableBeforeBatchEnd.get());
+        assertEquals(4, available(totalCount));
+    }
+
+    //Same read as the bookstore, the count of a hot book comes from the cache
+    private int available(AtomicInteger totalCount) {
+        return sut.getAvailable(1L, () -> hotBookCache.get(1L, id -> Optional.of(Book.builder()
+                .id(id)
+                .totalCount(totalCount.get())
+                .build())).map(Book::getTotalCount).orElse(0));
+    }
+
+    private void awaitApplied(Long id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sut.getPendingQuantity(id) != 0) {
+            assertTrue("Sales were not applied in time", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.findar.test.service;
+
+import com.findar.test.dtos.BookDto;
+import com.findar.test.dtos.BookSearchPageDto;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.serviceimpl.BookSearchServiceImpl;
+import com.findar.test.sharding.ShardRouter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.modelmapper.ModelMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BookSearchServiceImplTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private EmbeddedDatabase database;
+
+    private BookSearchServiceImpl sut;
+
+    @Before
+    public void setup() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table book (id bigint primary key, title varchar(255), author varchar(255), "
+                + "categories int, price real, total_count int)");
+        List<Book> books = Arrays.asList(
+                book(1L, "Tolkien and the Ring", "Author"),
+                book(2L, "Rings of Saturn", "Sebald"),
+                book(3L, "Essays", "Ring Lardner"),
+                book(4L, "The Ring", "Author"),
+                book(5L, "Ring", "Author"),
+                book(6L, "Ring", "Author"),
+                book(7L, "Other", "Author"));
+        books.forEach(book -> jdbcTemplate.update("insert into book values (?, ?, ?, ?, 0, 1)",
+                book.getId(), book.getTitle(), book.getAuthor(), Categories.THRILLER.getValue()));
+        jdbcTemplate.update("insert into book values (8, 'Ring', 'Author', ?, 0, 1)", Categories.DRAMA.getValue());
+
+        BookRepository bookRepository = mock(BookRepository.class);
+        when(bookRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Long> ids = StreamSupport.stream(invocation.<Iterable<Long>>getArgument(0).spliterator(), false)
+                    .collect(Collectors.toList());
+            return books.stream().filter(book -> ids.contains(book.getId())).collect(Collectors.toList());
+        });
+        sut = new BookSearchServiceImpl(database, bookRepository, new ShardRouter(1, 1), new ModelMapper(), 100, 10, 10);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testSearch_Then_BooksAreRankedExactTitlePrefixTitleThenAuthor() {
+        //Act
+        BookSearchPageDto page = sut.search("RING", Categories.THRILLER, 3, null);
+        BookSearchPageDto next = sut.search("RING", Categories.THRILLER, 3, page.getNextCursor());
+
+        //Assert
+        assertEquals(Arrays.asList(5L, 6L, 2L), ids(page));
+        assertEquals(Arrays.asList(1L, 4L, 3L), ids(next));
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    public void testSearch_Given_NoLimit_Then_DefaultLimitIsUsed() {
+        //Act
+        BookSearchPageDto page = sut.search("ring", Categories.THRILLER, null, null);
+
+        //Assert
+        assertEquals(6, page.getBooks().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void testSearch_Given_LimitAboveMax_Then_ThrowBadRequestException() {
+        //Arrange
+        thrown.expect(BadRequestException.class);
+        thrown.expectMessage("Limit should be between 1 and 10.");
+
+        //Act
+        sut.search("ring", Categories.THRILLER, 11, null);
+    }
+
+    @Test
+    public void testSearch_Given_InvalidCursor_Then_ThrowBadRequestException() {
+        //Arrange
+        thrown.expect(BadRequestException.class);
+        thrown.expectMessage("Invalid cursor.");
+
+        //Act
+        sut.search("ring", Categories.THRILLER, 3, "not a cursor");
+    }
+
+    private static List<Long> ids(BookSearchPageDto page) {
+        return page.getBooks().stream().map(BookDto::getId).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static Book book(Long id, String title, String author) {
+        return Book.builder().id(id).title(title).author(author).categories(Categories.THRILLER).build();
+    }
+}
@@ -1,25 +1,41 @@
 package com.findar.test.service;
 
+import com.findar.test.cache.HotBookCache;
 import com.findar.test.dtos.BookDto;
+import com.findar.test.dtos.SellBookDto;
+import com.findar.test.dtos.StockChangeDto;
 import com.findar.test.entities.Book;
 import com.findar.test.enums.Categories;
+import com.findar.test.events.StockChangedEvent;
 import com.findar.test.exceptions.BadRequestException;
 import com.findar.test.exceptions.BookNotFoundException;
+import com.findar.test.exceptions.ConflictException;
 import com.findar.test.exceptions.DuplicateResourceException;
 import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
 import com.findar.test.serviceimpl.BookStoreServiceImpl;
+import com.findar.test.sharding.ShardRouter;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.IntSupplier;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
@@ -41,6 +57,18 @@ public class BookServiceImplTest {
     @Mock
     private ModelMapper modelMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SalesLedger salesLedger;
+
+    @Spy
+    private HotBookCache hotBookCache = new HotBookCache(100);
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1, 1);
+
     @InjectMocks
     private BookStoreServiceImpl sut;
 
@@ -79,15 +107,23 @@ public class BookServiceImplTest {
     @Test
     public void testAddBook() {
         //Arrange
-        Book book = mock(Book.class);
-        when(bookRepository.findById(id)).thenReturn(Optional.ofNullable(book));
-        when(book.getTotalCount()).thenReturn(totalCount);
+        when(bookRepository.incrementTotalCount(id, 1)).thenReturn(1);
 
         //Act
         sut.addBook(id, 1);
 
         //Verify
-        verify(bookRepository).save(book);
+        verify(bookRepository).incrementTotalCount(id, 1);
+        verify(bookRepository, never()).save(any(Book.class));
+    }
+
+    @Test
+    public void testAddBook_Given_QuantityIsNotPositive_Then_ThrowsBadRequestException() {
+        thrown.expect(BadRequestException.class);
+        thrown.expectMessage("Quantity to add should be positive value.");
+
+        //Act
+        sut.addBook(id, 0);
     }
 
     @Test
@@ -95,7 +131,7 @@ public class BookServiceImplTest {
         thrown.expect(BookNotFoundException.class);
         thrown.expectMessage("Book with id:" + id + " is not registered.");
         //Arrange
-        when(bookRepository.findById(id)).thenReturn(Optional.empty());
+        when(bookRepository.incrementTotalCount(id, 1)).thenReturn(0);
 
         //Act
         sut.addBook(id, 1);
@@ -138,7 +174,7 @@ public class BookServiceImplTest {
         BookDto bookDto = mock(BookDto.class);
         List<BookDto> bookDtoList = new ArrayList<>();
         bookDtoList.add(bookDto);
-        when(bookRepository.findAll()).thenReturn(bookList);
+        when(bookRepository.findAll(Sort.by("id"))).thenReturn(bookList);
         when(modelMapper.map(book, BookDto.class)).thenReturn(bookDto);
 
         //Act
@@ -148,12 +184,32 @@ public class BookServiceImplTest {
         assertEquals(bookDtoList, actualBookDto);
     }
 
+    @Test
+    public void testGetBooksByCategories() {
+        //Arrange
+        Book book = mock(Book.class);
+        List<Book> bookList = new ArrayList<>();
+        bookList.add(book);
+
+        BookDto bookDto = mock(BookDto.class);
+        when(bookRepository.findAllByCategoriesOrderById(category)).thenReturn(bookList);
+        when(modelMapper.map(book, BookDto.class)).thenReturn(bookDto);
+
+        //Act
+        List<BookDto> actualBookDto = sut.getBooksByCategories(category);
+
+        //Assert
+        assertEquals(1, actualBookDto.size());
+        assertEquals(bookDto, actualBookDto.get(0));
+    }
+
     @Test
     public void testGetNumberOfBooksById() {
         //Arrange
         Book book = mock(Book.class);
         when(bookRepository.findById(id)).thenReturn(Optional.ofNullable(book));
         when(book.getTotalCount()).thenReturn(totalCount);
+        stubAvailable(0);
 
         //Act
         int actualNumberOfBooks = sut.getNumberOfBooksById(id);
@@ -167,6 +223,7 @@ public class BookServiceImplTest {
         //Arrange
         Book book = mock(Book.class);
         when(bookRepository.findById(id)).thenReturn(Optional.empty());
+        stubAvailable(0);
 
         //Act
         int actualNumberOfBooks = sut.getNumberOfBooksById(id);
@@ -175,6 +232,109 @@ public class BookServiceImplTest {
         assertEquals(0, actualNumberOfBooks);
     }
 
+    @Test
+    public void testGetNumberOfBooksById_Given_PendingSales_Then_PendingSalesAreDeducted() {
+        //Arrange
+        Book book = mock(Book.class);
+        when(bookRepository.findById(id)).thenReturn(Optional.ofNullable(book));
+        when(book.getTotalCount()).thenReturn(totalCount);
+        stubAvailable(1);
+
+        //Act
+        int actualNumberOfBooks = sut.getNumberOfBooksById(id);
+
+        //Assert
+        assertEquals(totalCount - 1, actualNumberOfBooks);
+    }
+
+    @Test
+    public void testGetNumberOfBooksByIds() {
+        //Arrange
+        when(salesLedger.readStockChanges(Collections.singletonList(id))).thenReturn(Collections.singletonList(
+                new StockChangedEvent(id, category, totalCount - 1, 4)));
+
+        //Act
+        List<StockChangeDto> stock = sut.getNumberOfBooksByIds(Collections.singletonList(id));
+
+        //Assert
+        assertEquals(1, stock.size());
+        assertEquals(category, stock.get(0).getCategories());
+        assertEquals(totalCount - 1, stock.get(0).getTotalCount());
+        assertEquals(4, stock.get(0).getSequence());
+    }
+
+    @Test
+    public void testSellBook() {
+        //Act
+        sut.sellBook(id, 2);
+
+        //Verify
+        verify(salesLedger).sell(Collections.singletonMap(id, 2));
+    }
+
+    @Test
+    public void testSellBooks_Given_SameBookTwice_Then_QuantitiesAreSummed() {
+        //Arrange
+        List<SellBookDto> sellBookDtos = Arrays.asList(
+                SellBookDto.builder().id(id).quantity(1).build(),
+                SellBookDto.builder().id(43L).quantity(1).build(),
+                SellBookDto.builder().id(id).quantity(2).build());
+        Map<Long, Integer> expected = new LinkedHashMap<>();
+        expected.put(id, 3);
+        expected.put(43L, 1);
+
+        //Act
+        sut.sellBooks(sellBookDtos);
+
+        //Verify
+        verify(salesLedger).sell(expected);
+    }
+
+    @Test
+    public void testSellBooks_Given_EmptyList_Then_ThrowsBadRequestException() {
+        thrown.expect(BadRequestException.class);
+        thrown.expectMessage("No books to sell.");
+
+        //Act
+        sut.sellBooks(Collections.emptyList());
+    }
+
+    @Test
+    public void testSellBooks_Given_MissingId_Then_ThrowsBadRequestException() {
+        thrown.expect(BadRequestException.class);
+        thrown.expectMessage("Id of the book to sell is missing.");
+
+        //Act
+        sut.sellBooks(Collections.singletonList(SellBookDto.builder().quantity(1).build()));
+    }
+
+    @Test
+    public void testSellBooks_Given_NegativeQuantity_Then_ThrowsBadRequestException() {
+        thrown.expect(BadRequestException.class);
+        thrown.expectMessage("Quantity to sell should be positive value.");
+
+        //Act
+        sut.sellBooks(Arrays.asList(
+                SellBookDto.builder().id(id).quantity(3).build(),
+                SellBookDto.builder().id(id).quantity(-1).build()));
+    }
+
+    @Test
+    public void testGetNumberOfBooksSoldByCategoryKeyword() {
+        //Arrange
+        Book book = mock(Book.class);
+        when(book.getId()).thenReturn(id);
+        when(bookRepository.findAllBookByCategoriesAndKeyword(keyword, category.getValue()))
+                .thenReturn(Collections.singletonList(book));
+        when(salesLedger.getSoldCount(id)).thenReturn(7L);
+
+        //Act
+        long sold = sut.getNumberOfBooksSoldByCategoriesKeyWord(keyword, category);
+
+        //Assert
+        assertEquals(7L, sold);
+    }
+
     @Test
     public void testUpdateBook() {
         //Arrange
@@ -188,7 +348,60 @@ public class BookServiceImplTest {
         sut.updateBook(id, bookDto);
 
         //Assert
-        verify(bookRepository).save(book);
+        verify(bookRepository).saveAndFlush(book);
+    }
+
+    @Test
+    public void testUpdateBook_Given_BookIsStored_Then_StoredBookIsUpdated() {
+        //Arrange
+        BookDto bookDto = mock(BookDto.class);
+        Book book = Book.builder().title(keyword).totalCount(totalCount).build();
+        Book stored = Book.builder().id(id).title("old").version(4L).build();
+        when(bookDto.getId()).thenReturn(id);
+        when(bookDto.getVersion()).thenReturn(null);
+        when(modelMapper.map(bookDto, Book.class)).thenReturn(book);
+        when(bookRepository.findById(id)).thenReturn(Optional.of(stored));
+
+        //Act
+        sut.updateBook(id, bookDto);
+
+        //Assert
+        verify(bookRepository).saveAndFlush(stored);
+        assertEquals(keyword, stored.getTitle());
+        assertEquals(totalCount, stored.getTotalCount());
+        assertEquals(4L, stored.getVersion());
+    }
+
+    @Test
+    public void testUpdateBook_Given_VersionIsStale_Then_ThrowsConflictException() {
+        thrown.expect(ConflictException.class);
+        thrown.expectMessage("Book with id:" + id + " changed since it was read.");
+        //Arrange
+        BookDto bookDto = mock(BookDto.class);
+        when(bookDto.getId()).thenReturn(id);
+        when(bookDto.getVersion()).thenReturn(3L);
+        when(modelMapper.map(bookDto, Book.class)).thenReturn(Book.builder().title(keyword).build());
+        when(bookRepository.findById(id)).thenReturn(Optional.of(Book.builder().id(id).title("old").version(4L).build()));
+
+        //Act
+        sut.updateBook(id, bookDto);
+    }
+
+    @Test
+    public void testUpdateBook_Given_BookChangesWhileUpdating_Then_ThrowsConflictException() {
+        thrown.expect(ConflictException.class);
+        thrown.expectMessage("Book with id:" + id + " changed while being updated.");
+        //Arrange
+        BookDto bookDto = mock(BookDto.class);
+        Book stored = Book.builder().id(id).title("old").version(4L).build();
+        when(bookDto.getId()).thenReturn(id);
+        when(bookDto.getVersion()).thenReturn(null);
+        when(modelMapper.map(bookDto, Book.class)).thenReturn(Book.builder().title(keyword).build());
+        when(bookRepository.findById(id)).thenReturn(Optional.of(stored));
+        when(bookRepository.saveAndFlush(stored)).thenThrow(new ObjectOptimisticLockingFailureException(Book.class, id));
+
+        //Act
+        sut.updateBook(id, bookDto);
     }
 
     @Test
@@ -223,4 +436,10 @@ public class BookServiceImplTest {
         //Assert
         assertEquals(bookDtos, actualBookDtos);
     }
-}
\ No newline at end of file
+
+    //The ledger deducts its pending quantity from the total count read by the service
+    private void stubAvailable(int pending) {
+        when(salesLedger.getAvailable(eq(id), any()))
+                .thenAnswer(invocation -> invocation.<IntSupplier>getArgument(1).getAsInt() - pending);
+    }
+}
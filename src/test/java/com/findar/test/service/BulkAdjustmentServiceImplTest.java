@@ -0,0 +1,194 @@
+package com.findar.test.service;
+
+import com.findar.test.dtos.BulkAdjustmentDto;
+import com.findar.test.dtos.BulkAdjustmentResultDto;
+import com.findar.test.enums.AdjustmentOperation;
+import com.findar.test.enums.BookField;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.CatalogChangedEvent;
+import com.findar.test.events.StockChangedEvent;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.serviceimpl.BulkAdjustmentServiceImpl;
+import com.findar.test.sharding.ShardRouter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BulkAdjustmentServiceImplTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private SalesLedger salesLedger;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private BulkAdjustmentServiceImpl sut;
+
+    @Before
+    public void setup() {
+        sut = new BulkAdjustmentServiceImpl(bookRepository, new ShardRouter(1, 1), salesLedger, eventPublisher, 2);
+    }
+
+    @Test
+    public void testAdjust_Given_MoreBooksThanChunkSize_Then_BooksAreAdjustedChunkByChunk() {
+        //Arrange
+        BulkAdjustmentDto bulkAdjustmentDto = adjustment(BookField.PRICE, AdjustmentOperation.PERCENT, -10);
+        when(bookRepository.findIdsMatching(Categories.THRILLER, null, null, null, 2)).thenReturn(Arrays.asList(1L, 2L));
+        when(bookRepository.findIdsMatching(Categories.THRILLER, null, null, 2L, 2)).thenReturn(Collections.singletonList(3L));
+        when(bookRepository.findIdsMatching(Categories.THRILLER, null, null, 3L, 2)).thenReturn(Collections.emptyList());
+        when(bookRepository.adjust(Arrays.asList(1L, 2L), BookField.PRICE, AdjustmentOperation.PERCENT, -10, 0)).thenReturn(2);
+        when(bookRepository.adjust(Collections.singletonList(3L), BookField.PRICE, AdjustmentOperation.PERCENT, -10, 0)).thenReturn(0);
+
+        //Act
+        BulkAdjustmentResultDto result = sut.adjust(bulkAdjustmentDto);
+
+        //Assert
+        assertEquals(3, result.getMatched());
+        assertEquals(2, result.getAdjusted());
+        ArgumentCaptor<CatalogChangedEvent> events = ArgumentCaptor.forClass(CatalogChangedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(events.getAllValues().get(0).getBookIds()));
+        assertEquals(Collections.singletonList(3L), new ArrayList<>(events.getAllValues().get(1).getBookIds()));
+        verify(salesLedger, never()).readStockChanges(any());
+    }
+
+    @Test
+    public void testAdjust_Given_TotalCount_Then_StockChangesArePublished() {
+        //Arrange
+        BulkAdjustmentDto bulkAdjustmentDto = adjustment(BookField.TOTAL_COUNT, AdjustmentOperation.DELTA, 5);
+        List<Long> ids = Collections.singletonList(7L);
+        when(bookRepository.findIdsMatching(Categories.THRILLER, null, null, null, 2)).thenReturn(ids);
+        when(bookRepository.findIdsMatching(Categories.THRILLER, null, null, 7L, 2)).thenReturn(Collections.emptyList());
+        stubSalesHeld();
+        when(bookRepository.adjust(ids, BookField.TOTAL_COUNT, AdjustmentOperation.DELTA, 5, 1)).thenReturn(1);
+        when(salesLedger.getPendingQuantity(7L)).thenReturn(1);
+        when(salesLedger.readStockChanges(ids)).thenReturn(Collections.singletonList(
+                new StockChangedEvent(7L, Categories.THRILLER, 7, 3)));
+
+        //Act
+        sut.adjust(bulkAdjustmentDto);
+
+        //Assert
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        StockChangedEvent stockChange = (StockChangedEvent) events.getAllValues().get(1);
+        assertEquals(Long.valueOf(7L), stockChange.getBookId());
+        assertEquals(7, stockChange.getAvailable());
+        assertEquals(3, stockChange.getSequence());
+    }
+
+    @Test
+    public void testAdjust_Given_PendingSales_Then_TotalCountIsKeptAbovePendingWithSalesHeld() {
+        //Arrange
+        BulkAdjustmentDto bulkAdjustmentDto = adjustment(BookField.TOTAL_COUNT, AdjustmentOperation.DELTA, -3);
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(bookRepository.findIdsMatching(Categories.THRILLER, null, null, null, 2)).thenReturn(ids);
+        when(bookRepository.findIdsMatching(Categories.THRILLER, null, null, 2L, 2)).thenReturn(Collections.emptyList());
+        stubSalesHeld();
+        when(salesLedger.getPendingQuantity(1L)).thenReturn(0);
+        when(salesLedger.getPendingQuantity(2L)).thenReturn(4);
+        when(bookRepository.adjust(Collections.singletonList(1L), BookField.TOTAL_COUNT, AdjustmentOperation.DELTA, -3, 0)).thenReturn(1);
+        when(bookRepository.adjust(Collections.singletonList(2L), BookField.TOTAL_COUNT, AdjustmentOperation.DELTA, -3, 4)).thenReturn(0);
+
+        //Act
+        BulkAdjustmentResultDto result = sut.adjust(bulkAdjustmentDto);
+
+        //Assert
+        assertEquals(2, result.getMatched());
+        assertEquals(1, result.getAdjusted());
+        verify(salesLedger).withSalesHeld(eq(ids), any());
+    }
+
+    @Test
+    public void testAdjust_Given_NoSelection_Then_ThrowsBadRequestException() {
+        //Arrange
+        BulkAdjustmentDto bulkAdjustmentDto = adjustment(BookField.PRICE, AdjustmentOperation.SET, 5);
+        bulkAdjustmentDto.setCategories(null);
+        thrown.expect(BadRequestException.class);
+
+        //Act
+        sut.adjust(bulkAdjustmentDto);
+
+        //Verify
+        verify(bookRepository, never()).adjust(any(), any(), any(), anyDouble(), anyInt());
+    }
+
+    @Test
+    public void testAdjust_Given_NoField_Then_ThrowsBadRequestException() {
+        //Arrange
+        thrown.expect(BadRequestException.class);
+        thrown.expectMessage("Field to adjust is missing.");
+
+        //Act
+        sut.adjust(adjustment(null, AdjustmentOperation.SET, 5));
+    }
+
+    @Test
+    public void testAdjust_Given_NoOperation_Then_ThrowsBadRequestException() {
+        //Arrange
+        thrown.expect(BadRequestException.class);
+        thrown.expectMessage("Operation of the adjustment is missing.");
+
+        //Act
+        sut.adjust(adjustment(BookField.PRICE, null, 5));
+    }
+
+    @Test
+    public void testAdjust_Given_FieldIsNotPriceOrTotalCount_Then_ThrowsBadRequestException() {
+        //Arrange
+        thrown.expect(BadRequestException.class);
+
+        //Act
+        sut.adjust(adjustment(BookField.TITLE, AdjustmentOperation.SET, 5));
+    }
+
+    @Test
+    public void testAdjust_Given_FractionalTotalCountDelta_Then_ThrowsBadRequestException() {
+        //Arrange
+        thrown.expect(BadRequestException.class);
+
+        //Act
+        sut.adjust(adjustment(BookField.TOTAL_COUNT, AdjustmentOperation.DELTA, 1.5));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubSalesHeld() {
+        when(salesLedger.withSalesHeld(any(), any())).thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(1)).get());
+    }
+
+    private static BulkAdjustmentDto adjustment(BookField field, AdjustmentOperation operation, double value) {
+        return BulkAdjustmentDto.builder()
+                .categories(Categories.THRILLER)
+                .field(field)
+                .operation(operation)
+                .value(value)
+                .build();
+    }
+}
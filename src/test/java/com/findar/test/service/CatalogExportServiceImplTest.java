@@ -0,0 +1,105 @@
+package com.findar.test.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.findar.test.dtos.ExportJobDto;
+import com.findar.test.enums.ExportFormat;
+import com.findar.test.enums.ExportStatus;
+import com.findar.test.exceptions.ExportNotFoundException;
+import com.findar.test.serviceimpl.CatalogExportServiceImpl;
+import com.findar.test.sharding.ShardRouter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class CatalogExportServiceImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private EmbeddedDatabase database;
+
+    private CatalogExportServiceImpl sut;
+
+    @Before
+    public void setup() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table book (id bigint primary key, title varchar(255), author varchar(255), "
+                + "categories int, price real, total_count int)");
+        jdbcTemplate.update("insert into book values (2, 'Second, the book', 'Author \"Two\"', 5, 10.5, 3)");
+        jdbcTemplate.update("insert into book values (1, 'First', 'Author One', 0, 7.25, 1)");
+        sut = new CatalogExportServiceImpl(database, new ShardRouter(1, 1), new ObjectMapper(), folder.getRoot().getPath(), 100);
+    }
+
+    @After
+    public void tearDown() {
+        sut.stop();
+        database.shutdown();
+    }
+
+    @Test
+    public void testStartExport_Given_Csv_Then_FileHoldsAllBooksInIdOrder() throws Exception {
+        //Act
+        ExportJobDto export = awaitExport(sut.startExport(ExportFormat.CSV, false));
+
+        //Assert
+        assertEquals(ExportStatus.COMPLETED, export.getStatus());
+        assertEquals(2, export.getRows());
+        List<String> lines = Files.readAllLines(sut.getExportFile(export.getId()));
+        assertEquals("id,title,author,categories,price,totalCount", lines.get(0));
+        assertEquals("1,First,Author One,LITERATURE,7.25,1", lines.get(1));
+        assertEquals("2,\"Second, the book\",\"Author \"\"Two\"\"\",DRAMA,10.5,3", lines.get(2));
+    }
+
+    @Test
+    public void testStartExport_Given_CompressedNdjson_Then_FileHoldsOneJsonObjectPerLine() throws Exception {
+        //Act
+        ExportJobDto export = awaitExport(sut.startExport(ExportFormat.NDJSON, true));
+
+        //Assert
+        Path file = sut.getExportFile(export.getId());
+        String content;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] lines = content.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"id\":1,\"title\":\"First\",\"author\":\"Author One\",\"categories\":\"LITERATURE\","
+                + "\"price\":7.25,\"totalCount\":1}", lines[0]);
+    }
+
+    @Test
+    public void testGetExport_Given_UnknownId_Then_ThrowsExportNotFoundException() {
+        thrown.expect(ExportNotFoundException.class);
+        thrown.expectMessage("Export with id:unknown is not found.");
+
+        //Act
+        sut.getExport("unknown");
+    }
+
+    private ExportJobDto awaitExport(ExportJobDto export) throws InterruptedException {
+        for (int i = 0; i < 100 && sut.getExport(export.getId()).getStatus() == ExportStatus.RUNNING; i++) {
+            Thread.sleep(50);
+        }
+        return sut.getExport(export.getId());
+    }
+}
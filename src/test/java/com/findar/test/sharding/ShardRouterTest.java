@@ -0,0 +1,73 @@
+package com.findar.test.sharding;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardRouterTest {
+
+    private final ShardRouter sut = new ShardRouter(4, 4);
+
+    @After
+    public void tearDown() {
+        sut.close();
+    }
+
+    @Test
+    public void testShardFor_Given_SequentialIds_Then_SpreadOverAllShards() {
+        //Act
+        Map<Integer, Long> booksPerShard = LongStream.rangeClosed(1, 4000).boxed()
+                .collect(Collectors.groupingBy(sut::shardFor, Collectors.counting()));
+
+        //Assert
+        assertEquals(4, booksPerShard.size());
+        booksPerShard.values().forEach(books -> assertTrue(books > 800 && books < 1200));
+    }
+
+    @Test
+    public void testOnEveryShard_Then_EachShardIsSelectedAndResultsAreInShardOrder() {
+        //Act
+        List<Integer> shards = sut.onEveryShard(shard -> ShardContext.current());
+
+        //Assert
+        assertEquals(Arrays.asList(0, 1, 2, 3), shards);
+        assertNull(ShardContext.current());
+    }
+
+    @Test
+    public void testOnShardsOf_Then_EachShardGetsOnlyTheIdsItHolds() {
+        //Arrange
+        List<Long> ids = LongStream.rangeClosed(1, 100).boxed().collect(Collectors.toList());
+
+        //Act
+        List<Long> routed = sut.onShardsOf(ids, shardIds -> {
+            shardIds.forEach(id -> assertEquals(sut.shardFor(id), (int) ShardContext.current()));
+            return shardIds;
+        });
+
+        //Assert
+        Collections.sort(routed);
+        assertEquals(ids, routed);
+    }
+
+    @Test
+    public void testMergeSorted() {
+        //Act
+        List<Integer> merged = ShardRouter.mergeSorted(Arrays.asList(Arrays.asList(1, 4, 9),
+                Collections.emptyList(), Arrays.asList(2, 3, 10), Collections.singletonList(5)), Comparator.naturalOrder());
+
+        //Assert
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 9, 10), merged);
+    }
+}
@@ -0,0 +1,251 @@
+package com.findar.test.sharding;
+
+import com.findar.test.dtos.BookDto;
+import com.findar.test.dtos.BookSearchPageDto;
+import com.findar.test.dtos.BulkAdjustmentDto;
+import com.findar.test.dtos.BulkAdjustmentResultDto;
+import com.findar.test.enums.AdjustmentOperation;
+import com.findar.test.enums.BookField;
+import com.findar.test.enums.Categories;
+import com.findar.test.service.BookSearchService;
+import com.findar.test.service.BookStoreService;
+import com.findar.test.service.BulkAdjustmentService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The bookstore on three embedded H2 shards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "bookstore.sharding.urls=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1;MODE=MySQL;IGNORECASE=TRUE,"
+                + "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1;MODE=MySQL;IGNORECASE=TRUE,"
+                + "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1;MODE=MySQL;IGNORECASE=TRUE",
+        "bookstore.sharding.username=sa",
+        "bookstore.sharding.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "bookstore.sales-journal.directory=target/sharding-test/sales-journal",
+        "bookstore.export.directory=target/sharding-test/exports",
+        "bookstore.export.fetch-size=100",
+        "bookstore.search.fetch-size=100",
+        "bookstore.warm-start.file=target/sharding-test/hot-books.snapshot",
+        "bookstore.best-sellers.file=target/sharding-test/best-sellers.checkpoint"})
+@DirtiesContext
+public class ShardedBookStoreTest {
+
+    @Autowired
+    private BookStoreService bookStoreService;
+
+    @Autowired
+    private BulkAdjustmentService bulkAdjustmentService;
+
+    @Autowired
+    private BookSearchService bookSearchService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        for (int shard = 0; shard < 3; shard++) {
+            DataSource dataSource = shardRoutingDataSource.getResolvedDataSources().get(shard);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.update("delete from book");
+            shards.add(jdbcTemplate);
+        }
+    }
+
+    @Test
+    public void testAddNewBook_Then_EachBookIsStoredOnItsShardOnly() {
+        //Arrange
+        List<Long> ids = LongStream.rangeClosed(1, 30).boxed().collect(Collectors.toList());
+
+        //Act
+        ids.forEach(id -> bookStoreService.addNewBook(book(id, "Book " + id)));
+
+        //Assert
+        for (int shard = 0; shard < 3; shard++) {
+            int target = shard;
+            List<Long> expected = ids.stream().filter(id -> shardRouter.shardFor(id) == target).collect(Collectors.toList());
+            assertEquals(expected, shards.get(shard).queryForList("select id from book order by id", Long.class));
+        }
+        assertEquals(ids, bookStoreService.getAllBooks().stream().map(BookDto::getId).collect(Collectors.toList()));
+        assertEquals("Book 17", bookStoreService.getBookById(17L).getTitle());
+    }
+
+    @Test
+    public void testUpdateBook_Then_BookOnItsShardIsUpdated() {
+        //Arrange
+        bookStoreService.addNewBook(book(41L, "Before"));
+
+        //Act
+        bookStoreService.updateBook(41L, book(41L, "After"));
+        bookStoreService.addBook(41L, 2);
+
+        //Assert
+        JdbcTemplate shard = shards.get(shardRouter.shardFor(41L));
+        assertEquals("After", shard.queryForObject("select title from book where id = 41", String.class));
+        assertEquals(Integer.valueOf(7), shard.queryForObject("select total_count from book where id = 41", Integer.class));
+    }
+
+    @Test
+    public void testGetBookByCategoriesKeyWord_Then_MatchesOfAllShardsAreMergedInIdOrder() {
+        //Arrange
+        LongStream.rangeClosed(50, 60).forEach(id -> bookStoreService.addNewBook(book(id, id % 2 == 0 ? "Dune " + id : "Emma " + id)));
+
+        //Act
+        List<BookDto> books = bookStoreService.getBookByCategoriesKeyWord("dune", Categories.THRILLER);
+
+        //Assert
+        assertEquals(Arrays.asList(50L, 52L, 54L, 56L, 58L, 60L),
+                books.stream().map(BookDto::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGetAllBooks_Given_Fields_Then_OnlyThoseFieldsOfEveryShardAreReturnedInIdOrder() {
+        //Arrange
+        LongStream.rangeClosed(80, 85).forEach(id -> bookStoreService.addNewBook(book(id, "Book " + id)));
+
+        //Act
+        List<Map<String, Object>> books = bookStoreService.getAllBooks(BookField.parse("price,title"));
+
+        //Assert
+        assertEquals(LongStream.rangeClosed(80, 85).boxed().collect(Collectors.toList()),
+                books.stream().map(book -> book.get("id")).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("id", "title", "price"), new ArrayList<>(books.get(0).keySet()));
+        assertEquals("Book 80", books.get(0).get("title"));
+        assertEquals(9.5f, books.get(0).get("price"));
+    }
+
+    @Test
+    public void testGetBookByCategoriesKeyWord_Given_Fields_Then_OnlyThoseFieldsOfTheMatchesAreReturned() {
+        //Arrange
+        LongStream.rangeClosed(90, 95).forEach(id -> bookStoreService.addNewBook(book(id, id % 2 == 0 ? "Dune " + id : "Emma " + id)));
+
+        //Act
+        List<Map<String, Object>> books = bookStoreService.getBookByCategoriesKeyWord("DUNE", Categories.THRILLER,
+                BookField.parse("totalCount"));
+
+        //Assert
+        assertEquals(Arrays.asList(90L, 92L, 94L), books.stream().map(book -> book.get("id")).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("id", "totalCount"), new ArrayList<>(books.get(0).keySet()));
+        assertEquals(5, books.get(0).get("totalCount"));
+        assertTrue(bookStoreService.getBooksByCategories(Categories.DRAMA, BookField.parse("title")).isEmpty());
+    }
+
+    @Test
+    public void testBulkAdjustment_Then_MatchingBooksOfEveryShardAreAdjusted() {
+        //Arrange
+        LongStream.rangeClosed(100, 106).forEach(id -> bookStoreService.addNewBook(book(id, "Book " + id)));
+        BookDto other = book(107L, "Other");
+        other.setCategories(Categories.DRAMA);
+        bookStoreService.addNewBook(other);
+        long version = bookStoreService.getBookById(100L).getVersion();
+
+        //Act
+        BulkAdjustmentResultDto discount = bulkAdjustmentService.adjust(BulkAdjustmentDto.builder()
+                .categories(Categories.THRILLER)
+                .field(BookField.PRICE)
+                .operation(AdjustmentOperation.PERCENT)
+                .value(-10)
+                .build());
+        BulkAdjustmentResultDto restock = bulkAdjustmentService.adjust(BulkAdjustmentDto.builder()
+                .ids(Arrays.asList(100L, 101L, 107L))
+                .field(BookField.TOTAL_COUNT)
+                .operation(AdjustmentOperation.DELTA)
+                .value(-6)
+                .build());
+
+        //Assert
+        assertEquals(7, discount.getMatched());
+        assertEquals(7, discount.getAdjusted());
+        assertEquals(8.55f, bookStoreService.getBookById(106L).getPrice(), 0.001f);
+        assertEquals(9.5f, bookStoreService.getBookById(107L).getPrice(), 0.001f);
+        assertEquals(version + 1, (long) bookStoreService.getBookById(100L).getVersion());
+        //Books with 5 copies cannot lose 6
+        assertEquals(3, restock.getMatched());
+        assertEquals(0, restock.getAdjusted());
+        assertEquals(5, bookStoreService.getNumberOfBooksById(100L));
+    }
+
+    @Test
+    public void testSearch_Then_MatchesOfAllShardsArePagedBestMatchFirst() {
+        //Arrange
+        LongStream.rangeClosed(110, 115).forEach(id -> bookStoreService.addNewBook(book(id, id % 2 == 0 ? "Dune Messiah " + id : "Dune")));
+        bookStoreService.addNewBook(book(116L, "Children of Dune"));
+
+        //Act
+        List<Long> ids = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            BookSearchPageDto page = bookSearchService.search("dune", Categories.THRILLER, 2, cursor);
+            page.getBooks().forEach(bookDto -> ids.add(bookDto.getId()));
+            pageSizes.add(page.getBooks().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        //Assert
+        assertEquals(Arrays.asList(111L, 113L, 115L, 110L, 112L, 114L, 116L), ids);
+        assertEquals(Arrays.asList(2, 2, 2, 1), pageSizes);
+    }
+
+    @Test
+    public void testRebalance_Then_MisplacedBooksAreMovedToTheirShard() {
+        //Arrange
+        long id = 70L;
+        int home = shardRouter.shardFor(id);
+        int wrong = (home + 1) % 3;
+        shards.get(wrong).update("insert into book (id, title, author, categories, price, total_count, version) "
+                + "values (70, 'Moved', 'Author', 0, 3.5, 4, 2)");
+        bookStoreService.addNewBook(book(71L, "Stays"));
+
+        //Act
+        Map<Integer, Integer> moved = shardRebalancer.rebalance();
+
+        //Assert
+        assertEquals(Integer.valueOf(1), moved.get(wrong));
+        assertEquals(Collections.emptyList(), shards.get(wrong).queryForList("select id from book where id = 70", Long.class));
+        assertEquals("Moved", shards.get(home).queryForObject("select title from book where id = 70", String.class));
+        assertEquals(4, bookStoreService.getNumberOfBooksById(id));
+        assertTrue(shardRebalancer.rebalance().values().stream().allMatch(count -> count == 0));
+    }
+
+    private static BookDto book(Long id, String title) {
+        BookDto bookDto = new BookDto();
+        bookDto.setId(id);
+        bookDto.setTitle(title);
+        bookDto.setAuthor("Author");
+        bookDto.setCategories(Categories.THRILLER);
+        bookDto.setPrice(9.5f);
+        bookDto.setTotalCount(5);
+        return bookDto;
+    }
+}
@@ -0,0 +1,148 @@
+package com.findar.test.sharding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.findar.test.dtos.BookDto;
+import com.findar.test.enums.Categories;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The bookstore on two embedded H2 shards through its HTTP endpoints,
+ * so every request runs with the web layer of the application around it.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "bookstore.sharding.urls=jdbc:h2:mem:web-shard0;DB_CLOSE_DELAY=-1;MODE=MySQL;IGNORECASE=TRUE,"
+                + "jdbc:h2:mem:web-shard1;DB_CLOSE_DELAY=-1;MODE=MySQL;IGNORECASE=TRUE",
+        "bookstore.sharding.username=sa",
+        "bookstore.sharding.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "bookstore.sales-journal.directory=target/sharding-test/web/sales-journal",
+        "bookstore.export.directory=target/sharding-test/web/exports",
+        "bookstore.export.fetch-size=100",
+        "bookstore.search.fetch-size=100",
+        "bookstore.warm-start.file=target/sharding-test/web/hot-books.snapshot",
+        "bookstore.best-sellers.file=target/sharding-test/web/best-sellers.checkpoint"})
+@AutoConfigureMockMvc
+@DirtiesContext
+public class ShardedBookStoreWebTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        for (int shard = 0; shard < 2; shard++) {
+            DataSource dataSource = shardRoutingDataSource.getResolvedDataSources().get(shard);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.update("delete from book");
+            shards.add(jdbcTemplate);
+        }
+    }
+
+    @Test
+    public void testAddAndRestockBooks_Then_EachBookIsStoredAndUpdatedOnItsShard() throws Exception {
+        //Arrange
+        List<Long> ids = LongStream.rangeClosed(1, 12).boxed().collect(Collectors.toList());
+
+        //Act
+        for (Long id : ids) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/add-new-book")
+                    .content(objectMapper.writeValueAsBytes(book(id, Categories.THRILLER)))
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isCreated());
+            mockMvc.perform(MockMvcRequestBuilders.put("/api/add-book/" + id + "/" + id))
+                    .andExpect(status().isOk());
+        }
+
+        //Assert
+        for (int shard = 0; shard < 2; shard++) {
+            int target = shard;
+            List<Long> expected = ids.stream().filter(id -> ShardRouter.shardFor(id, 2) == target).collect(Collectors.toList());
+            assertTrue("No book on shard " + shard, !expected.isEmpty());
+            assertEquals(expected, shards.get(shard).queryForList("select id from book order by id", Long.class));
+            for (Long id : expected) {
+                assertEquals("Total count of book " + id, Integer.valueOf(5 + id.intValue()),
+                        shards.get(shard).queryForObject("select total_count from book where id = ?", Integer.class, id));
+            }
+        }
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/book-list").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(ids.size()));
+    }
+
+    @Test
+    public void testBulkAdjustment_Then_BooksOfEveryShardAreAdjustedOnce() throws Exception {
+        //Arrange
+        List<Long> ids = new ArrayList<>();
+        for (long id = 200; ids.size() < 10; id++) {
+            //2 books on shard 0 and 8 on shard 1
+            if (ShardRouter.shardFor(id, 2) == 1 || ids.stream().filter(other -> ShardRouter.shardFor(other, 2) == 0).count() < 2) {
+                ids.add(id);
+            }
+        }
+        for (Long id : ids) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/add-new-book")
+                    .content(objectMapper.writeValueAsBytes(book(id, Categories.DRAMA)))
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isCreated());
+        }
+
+        //Act
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/books/bulk-adjustment")
+                .content("{\"categories\": \"DRAMA\", \"field\": \"totalCount\", \"operation\": \"DELTA\", \"value\": 1}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matched").value(10))
+                .andExpect(jsonPath("$.adjusted").value(10));
+
+        //Assert
+        assertEquals(Integer.valueOf(2), shards.get(0).queryForObject("select count(*) from book", Integer.class));
+        assertEquals(Integer.valueOf(8), shards.get(1).queryForObject("select count(*) from book", Integer.class));
+        for (int shard = 0; shard < 2; shard++) {
+            assertEquals("Total counts on shard " + shard, Collections.singletonList(6),
+                    shards.get(shard).queryForList("select distinct total_count from book", Integer.class));
+        }
+    }
+
+    static BookDto book(Long id, Categories categories) {
+        return BookDto.builder()
+                .id(id)
+                .title("Book " + id)
+                .author("Author")
+                .categories(categories)
+                .price(9.5f)
+                .totalCount(5)
+                .build();
+    }
+}
@@ -0,0 +1,247 @@
+package com.findar.test.stream;
+
+import com.findar.test.dtos.StockChangeDto;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.StockChangedEvent;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StockStreamBrokerTest {
+
+    private final List<RecordingEmitter> created = new ArrayList<>();
+
+    private final Queue<RecordingEmitter> emitters = new ArrayDeque<>();
+
+    private long sequence;
+
+    private StockStreamBroker sut;
+
+    @After
+    public void tearDown() {
+        created.forEach(RecordingEmitter::release);
+        sut.stop();
+    }
+
+    @Test
+    public void testOnStockChanged_Given_ChangesWhileSending_Then_OnlyTheLatestOfEachBookIsSent() throws Exception {
+        //Arrange
+        sut = broker(10, 1, 60000);
+        RecordingEmitter emitter = emitter(true);
+        sut.subscribe(Collections.singletonList(1L), Collections.emptyList(), ids -> Collections.emptyList());
+        sut.onStockChanged(change(1L, Categories.DRAMA, 5));
+        assertTrue(emitter.sending.await(5, TimeUnit.SECONDS));
+
+        //Act
+        sut.onStockChanged(change(1L, Categories.DRAMA, 4));
+        sut.onStockChanged(change(1L, Categories.DRAMA, 3));
+        sut.onStockChanged(change(1L, Categories.DRAMA, 2));
+        emitter.release();
+
+        //Assert
+        assertEquals(5, emitter.next().getTotalCount());
+        assertEquals(2, emitter.next().getTotalCount());
+        assertNull(emitter.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testOnStockChanged_Given_OlderChangeDeliveredLate_Then_ItIsDropped() throws Exception {
+        //Arrange
+        sut = broker(10, 1, 60000);
+        RecordingEmitter emitter = emitter(true);
+        sut.subscribe(Collections.singletonList(1L), Collections.emptyList(), ids -> Collections.emptyList());
+        sut.onStockChanged(new StockChangedEvent(1L, Categories.DRAMA, 5, 1));
+        assertTrue(emitter.sending.await(5, TimeUnit.SECONDS));
+
+        //Act
+        //Sold down to 2 then to 1, the events published in the reverse order
+        sut.onStockChanged(new StockChangedEvent(1L, Categories.DRAMA, 1, 3));
+        sut.onStockChanged(new StockChangedEvent(1L, Categories.DRAMA, 2, 2));
+        emitter.release();
+        StockChangeDto buffered = emitter.next();
+        StockChangeDto latest = emitter.next();
+        sut.onStockChanged(new StockChangedEvent(1L, Categories.DRAMA, 2, 2));
+
+        //Assert
+        assertEquals(5, buffered.getTotalCount());
+        assertEquals(1, latest.getTotalCount());
+        assertEquals(3, latest.getSequence());
+        assertNull(emitter.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testOnStockChanged_Then_ChangesAreSentToTheSubscribersOfTheBookOrItsCategory() throws Exception {
+        //Arrange
+        sut = broker(10, 2, 60000);
+        RecordingEmitter byId = emitter(false);
+        RecordingEmitter byCategory = emitter(false);
+        RecordingEmitter byBoth = emitter(false);
+        sut.subscribe(Collections.singletonList(1L), Collections.emptyList(), ids -> Collections.singletonList(
+                StockChangeDto.builder().id(1L).categories(Categories.FICTION).totalCount(9).sequence(0).build()));
+        sut.subscribe(Collections.emptyList(), Collections.singletonList(Categories.DRAMA), ids -> Collections.emptyList());
+        sut.subscribe(Collections.singletonList(2L), Collections.singletonList(Categories.DRAMA), ids -> Collections.emptyList());
+        assertEquals(9, byId.next().getTotalCount());
+
+        //Act
+        sut.onStockChanged(change(1L, Categories.FICTION, 3));
+        sut.onStockChanged(change(2L, Categories.DRAMA, 4));
+        sut.onStockChanged(change(3L, Categories.POETRY, 5));
+
+        //Assert
+        assertEquals(3, byId.next().getTotalCount());
+        assertEquals(Long.valueOf(2L), byCategory.next().getId());
+        assertEquals(Long.valueOf(2L), byBoth.next().getId());
+        assertNull(byId.sent.poll(200, TimeUnit.MILLISECONDS));
+        assertNull(byCategory.sent.poll(0, TimeUnit.MILLISECONDS));
+        assertNull(byBoth.sent.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(3, sut.getSubscriberCount());
+    }
+
+    @Test
+    public void testOnStockChanged_Given_BufferOverflow_Then_SubscriberIsDisconnected() throws Exception {
+        //Arrange
+        sut = broker(2, 1, 60000);
+        RecordingEmitter emitter = emitter(true);
+        sut.subscribe(Collections.emptyList(), Collections.singletonList(Categories.DRAMA), ids -> Collections.emptyList());
+        sut.onStockChanged(change(1L, Categories.DRAMA, 1));
+        assertTrue(emitter.sending.await(5, TimeUnit.SECONDS));
+
+        //Act
+        for (long id = 2; id <= 4; id++) {
+            sut.onStockChanged(change(id, Categories.DRAMA, 1));
+        }
+
+        //Assert
+        assertEquals(0, sut.getSubscriberCount());
+        emitter.release();
+        assertTrue(emitter.completedWithError.await(5, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(1L), emitter.next().getId());
+        assertNull(emitter.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testOnStockChanged_Given_SendFails_Then_SubscriberIsRemoved() throws Exception {
+        //Arrange
+        sut = broker(10, 1, 60000);
+        RecordingEmitter emitter = emitter(false);
+        emitter.failing = true;
+        sut.subscribe(Collections.singletonList(1L), Collections.emptyList(), ids -> Collections.emptyList());
+
+        //Act
+        sut.onStockChanged(change(1L, Categories.DRAMA, 1));
+
+        //Assert
+        assertTrue(emitter.completedWithError.await(5, TimeUnit.SECONDS));
+        assertEquals(0, sut.getSubscriberCount());
+    }
+
+    @Test
+    public void testOnStockChanged_Given_SendBlockedPastTimeout_Then_SubscriberIsDisconnectedAndOthersStillServed() throws Exception {
+        //Arrange
+        sut = broker(10, 1, 100);
+        RecordingEmitter stalled = emitter(true);
+        RecordingEmitter healthy = emitter(false);
+        sut.subscribe(Collections.singletonList(1L), Collections.emptyList(), ids -> Collections.emptyList());
+        sut.subscribe(Collections.singletonList(2L), Collections.emptyList(), ids -> Collections.emptyList());
+        sut.onStockChanged(change(1L, Categories.DRAMA, 1));
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+
+        //Act
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sut.getSubscriberCount() != 1) {
+            assertTrue("Stalled subscriber was not disconnected", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        sut.onStockChanged(change(2L, Categories.DRAMA, 7));
+
+        //Assert
+        assertEquals(7, healthy.next().getTotalCount());
+        stalled.release();
+        assertTrue(stalled.completedWithError.await(5, TimeUnit.SECONDS));
+    }
+
+    //Changes numbered in the order they are made
+    private StockChangedEvent change(Long id, Categories categories, int available) {
+        return new StockChangedEvent(id, categories, available, ++sequence);
+    }
+
+    private StockStreamBroker broker(int bufferSize, int dispatcherThreads, long sendTimeoutMillis) {
+        return new StockStreamBroker(60000, bufferSize, dispatcherThreads, sendTimeoutMillis) {
+            @Override
+            SseEmitter createEmitter() {
+                return emitters.remove();
+            }
+        };
+    }
+
+    private RecordingEmitter emitter(boolean blockFirstSend) {
+        RecordingEmitter emitter = new RecordingEmitter(blockFirstSend);
+        emitters.add(emitter);
+        created.add(emitter);
+        return emitter;
+    }
+
+    /**
+     * Records the changes sent; the first send can block, ignoring interrupts, until released.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<StockChangeDto> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch released;
+        private final CountDownLatch completedWithError = new CountDownLatch(1);
+        private volatile boolean failing;
+
+        RecordingEmitter(boolean blockFirstSend) {
+            released = new CountDownLatch(blockFirstSend ? 1 : 0);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            sending.countDown();
+            while (true) {
+                try {
+                    released.await();
+                    break;
+                } catch (InterruptedException e) {
+                    //A client that stopped reading does not unblock on interrupt either
+                }
+            }
+            builder.build().stream()
+                    .filter(item -> item.getData() instanceof StockChangeDto)
+                    .forEach(item -> sent.add((StockChangeDto) item.getData()));
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            completedWithError.countDown();
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        StockChangeDto next() throws InterruptedException {
+            StockChangeDto change = sent.poll(5, TimeUnit.SECONDS);
+            assertTrue("No change sent", change != null);
+            return change;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.findar.test.stress;
+
+import com.findar.test.bestseller.BestSellerBoard;
+import com.findar.test.dtos.BestSellerDto;
+import com.findar.test.dtos.BookDto;
+import com.findar.test.dtos.BulkAdjustmentDto;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.AdjustmentOperation;
+import com.findar.test.enums.BookField;
+import com.findar.test.enums.Categories;
+import com.findar.test.exceptions.BadRequestException;
+import com.findar.test.exceptions.ConflictException;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.service.BookStoreService;
+import com.findar.test.service.BulkAdjustmentService;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Many threads of mixed restocks, bulk stock adjustments, sales, updates and reads on a few books of an embedded
+ * database, then checks that no stock change was lost and that stock never went negative.
+ * <p>
+ * Runs for stress.duration-seconds (10 by default) with stress.threads threads on stress.books books,
+ * eg: mvn test -Pstress -Dstress.duration-seconds=600 for a soak run.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress;DB_CLOSE_DELAY=-1;MODE=MySQL;IGNORECASE=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "bookstore.sales-journal.directory=target/stress/sales-journal",
+        "bookstore.sales-journal.apply-interval-ms=5",
+        "bookstore.export.directory=target/stress/exports",
+        "bookstore.export.fetch-size=100",
+        "bookstore.warm-start.file=target/stress/hot-books.snapshot",
+        "bookstore.best-sellers.file=target/stress/best-sellers.checkpoint"})
+@DirtiesContext
+public class InventoryStressTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InventoryStressTest.class);
+    private static final long DURATION_SECONDS = Long.getLong("stress.duration-seconds", 10);
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int BOOKS = Integer.getInteger("stress.books", 16);
+    private static final int INITIAL_COUNT = 100;
+    private static final int UPDATE_ATTEMPTS = 3;
+
+    @Autowired
+    private BookStoreService bookStoreService;
+
+    @Autowired
+    private BulkAdjustmentService bulkAdjustmentService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private SalesLedger salesLedger;
+
+    @Autowired
+    private BestSellerBoard bestSellerBoard;
+
+    private final LongAdder[] restocked = new LongAdder[BOOKS];
+    private final LongAdder[] adjusted = new LongAdder[BOOKS];
+    private final LongAdder[] sold = new LongAdder[BOOKS];
+    private final OperationStats restocks = new OperationStats("restock");
+    private final OperationStats bulkStocks = new OperationStats("bulk");
+    private final OperationStats sales = new OperationStats("sell");
+    private final OperationStats updates = new OperationStats("update");
+    private final OperationStats reads = new OperationStats("read");
+    private final LongAdder negativeStockReads = new LongAdder();
+    private final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+    @BeforeClass
+    public static void cleanDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(Paths.get("target/stress"));
+    }
+
+    @Test
+    public void testMixedLoad_Then_NoStockChangeIsLostAndStockNeverNegative() throws InterruptedException {
+        //Arrange
+        for (int book = 0; book < BOOKS; book++) {
+            restocked[book] = new LongAdder();
+            adjusted[book] = new LongAdder();
+            sold[book] = new LongAdder();
+            bookStoreService.addNewBook(BookDto.builder()
+                    .id(id(book))
+                    .title("Stress book " + book)
+                    .author("Author " + book)
+                    .categories(Categories.values()[book % Categories.values().length])
+                    .price(10)
+                    .totalCount(INITIAL_COUNT)
+                    .build());
+        }
+
+        //Act
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int thread = 0; thread < THREADS; thread++) {
+            workers.execute(() -> {
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        step(ThreadLocalRandom.current());
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        workers.shutdown();
+        assertTrue("Workers did not stop", workers.awaitTermination(DURATION_SECONDS + 60, TimeUnit.SECONDS));
+        double seconds = (System.nanoTime() - started) / 1e9;
+        awaitSalesApplied();
+
+        //Assert
+        report(seconds);
+        assertTrue("Unexpected failures: " + failures, failures.isEmpty());
+        assertEquals("Negative stock was read", 0, negativeStockReads.sum());
+        Map<Long, Long> bestSellers = awaitBestSellers();
+        for (int book = 0; book < BOOKS; book++) {
+            assertEquals("Best-seller count of book " + id(book), sold[book].sum(),
+                    (long) bestSellers.getOrDefault(id(book), 0L));
+            long expected = INITIAL_COUNT + restocked[book].sum() + adjusted[book].sum() - sold[book].sum();
+            Book stored = bookRepository.findById(id(book)).orElseThrow(AssertionError::new);
+            assertEquals("Total count of book " + id(book), expected, stored.getTotalCount());
+            assertTrue("Negative stock for book " + id(book), stored.getTotalCount() >= 0);
+            assertEquals("Sold count of book " + id(book), sold[book].sum(), salesLedger.getSoldCount(id(book)));
+        }
+    }
+
+    //25% restocks, 10% bulk stock adjustments, 30% sales, 15% updates, 20% reads
+    private void step(ThreadLocalRandom random) {
+        int book = random.nextInt(BOOKS);
+        int operation = random.nextInt(100);
+        if (operation < 25) {
+            int quantity = 1 + random.nextInt(5);
+            restocks.time(stats -> {
+                bookStoreService.addBook(id(book), quantity);
+                restocked[book].add(quantity);
+            });
+        } else if (operation < 35) {
+            //Mostly removals, to meet the copies sold and not yet applied
+            int delta = random.nextInt(4) == 0 ? 1 + random.nextInt(5) : -1 - random.nextInt(8);
+            bulkStocks.time(stats -> {
+                if (bulkAdjustmentService.adjust(BulkAdjustmentDto.builder()
+                        .ids(Collections.singletonList(id(book)))
+                        .field(BookField.TOTAL_COUNT)
+                        .operation(AdjustmentOperation.DELTA)
+                        .value(delta)
+                        .build()).getAdjusted() == 1) {
+                    adjusted[book].add(delta);
+                } else {
+                    //Fewer copies left than removed
+                    stats.rejected.increment();
+                }
+            });
+        } else if (operation < 65) {
+            int quantity = 1 + random.nextInt(8);
+            sales.time(stats -> {
+                try {
+                    bookStoreService.sellBook(id(book), quantity);
+                    sold[book].add(quantity);
+                } catch (BadRequestException e) {
+                    //Not enough copies left
+                    stats.rejected.increment();
+                }
+            });
+        } else if (operation < 80) {
+            updates.time(stats -> update(book, random, stats));
+        } else {
+            reads.time(stats -> {
+                if (bookStoreService.getNumberOfBooksById(id(book)) < 0) {
+                    negativeStockReads.increment();
+                }
+                bookStoreService.getBookById(id(book));
+            });
+        }
+    }
+
+    //Read-modify-write of the title and price, given back with the version read
+    private void update(int book, ThreadLocalRandom random, OperationStats stats) {
+        for (int attempt = 1; attempt <= UPDATE_ATTEMPTS; attempt++) {
+            BookDto read = bookStoreService.getBookById(id(book));
+            read.setTitle("Stress book " + book + " rev " + random.nextInt(1000));
+            read.setPrice(5 + random.nextInt(20));
+            try {
+                bookStoreService.updateBook(id(book), read);
+                return;
+            } catch (ConflictException e) {
+                stats.conflicts.increment();
+            }
+        }
+        stats.rejected.increment();
+    }
+
+    private void awaitSalesApplied() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (int book = 0; book < BOOKS; book++) {
+            while (salesLedger.getPendingQuantity(id(book)) != 0) {
+                assertTrue("Sales were not applied in time", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    //Fewer books than counters, so the leaderboard counts are exact once the last batch is published
+    private Map<Long, Long> awaitBestSellers() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        long totalSold = 0;
+        for (LongAdder bookSold : sold) {
+            totalSold += bookSold.sum();
+        }
+        while (true) {
+            Map<Long, Long> bestSellers = bestSellerBoard.getBestSellers(null, BOOKS).stream()
+                    .collect(Collectors.toMap(BestSellerDto::getId, BestSellerDto::getSold));
+            if (bestSellers.values().stream().mapToLong(Long::longValue).sum() >= totalSold
+                    || System.nanoTime() > deadline) {
+                return bestSellers;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void report(double seconds) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%nStress run: %d threads, %d books, %.1f s%n", THREADS, BOOKS, seconds));
+        report.append(String.format("%-8s %10s %10s %10s %10s %10s %10s %10s%n",
+                "op", "count", "ops/s", "mean us", "p99 us", "max us", "conflicts", "rejected"));
+        long total = 0;
+        for (OperationStats stats : new OperationStats[]{restocks, bulkStocks, sales, updates, reads}) {
+            long count = stats.count.sum();
+            total += count;
+            report.append(String.format("%-8s %10d %10.0f %10.0f %10d %10d %10d %10d%n", stats.name, count, count / seconds,
+                    count == 0 ? 0 : stats.nanos.sum() / 1e3 / count, stats.percentile(0.99) / 1000,
+                    stats.max.get() / 1000, stats.conflicts.sum(), stats.rejected.sum()));
+        }
+        report.append(String.format("total    %10d %10.0f", total, total / seconds));
+        LOGGER.info(report.toString());
+    }
+
+    private static Long id(int book) {
+        return 9_000_000L + book;
+    }
+
+    private static final class OperationStats {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        //Latencies by power of two of nanoseconds
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private OperationStats(String name) {
+            this.name = name;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void time(Consumer<OperationStats> operation) {
+            long started = System.nanoTime();
+            operation.accept(this);
+            long elapsed = System.nanoTime() - started;
+            count.increment();
+            nanos.add(elapsed);
+            max.accumulateAndGet(elapsed, Math::max);
+            buckets[64 - Long.numberOfLeadingZeros(Math.max(1, elapsed))].increment();
+        }
+
+        //Upper bound of the bucket holding the percentile
+        private long percentile(double percentile) {
+            long total = count.sum();
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i].sum();
+                if (total > 0 && seen >= percentile * total) {
+                    return 1L << i;
+                }
+            }
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.findar.test.suggest;
+
+import com.findar.test.dtos.SuggestionDto;
+import com.findar.test.entities.Book;
+import com.findar.test.enums.Categories;
+import com.findar.test.events.CatalogChangedEvent;
+import com.findar.test.repositories.BookRepository;
+import com.findar.test.sales.SalesLedger;
+import com.findar.test.sharding.ShardRouter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SuggestionIndexTest {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+
+    private final SalesLedger salesLedger = mock(SalesLedger.class);
+
+    private SuggestionIndex sut;
+
+    @Before
+    public void setup() {
+        sut = new SuggestionIndex(bookRepository, new ShardRouter(1, 1), salesLedger, 3);
+        when(salesLedger.getSoldCount(2L)).thenReturn(50L);
+        when(salesLedger.getSoldCount(3L)).thenReturn(10L);
+        sut.index(Arrays.asList(
+                book(1L, "The Lord of the Rings", "J. R. R. Tolkien", Categories.FICTION),
+                book(2L, "Lord of the Flies", "William Golding", Categories.LITERATURE),
+                book(3L, "Les Misérables", "Victor Hugo", Categories.LITERATURE),
+                book(4L, "Lords and Ladies", "Terry Pratchett", Categories.FICTION)), Collections.emptySet());
+    }
+
+    @Test
+    public void testSuggest_Then_AnyWordMatchesAndMostSoldComeFirst() {
+        //Act
+        List<Long> ids = ids(sut.suggest("LORD", null, 10));
+
+        //Assert
+        assertEquals(Arrays.asList(2L, 1L, 4L), ids);
+    }
+
+    @Test
+    public void testSuggest_Given_Category_Then_OnlyBooksOfCategory() {
+        //Act
+        List<Long> ids = ids(sut.suggest("lord", Categories.FICTION, 10));
+
+        //Assert
+        assertEquals(Arrays.asList(1L, 4L), ids);
+    }
+
+    @Test
+    public void testSuggest_Then_AccentsAndPunctuationAreIgnoredAndAuthorsMatch() {
+        //Assert
+        assertEquals(Collections.singletonList(3L), ids(sut.suggest("miser", null, 10)));
+        assertEquals(Collections.singletonList(1L), ids(sut.suggest("r. tolk", null, 10)));
+        assertEquals(Collections.singletonList(2L), ids(sut.suggest("lord of the f", null, 10)));
+        assertTrue(sut.suggest("  ", null, 10).isEmpty());
+    }
+
+    @Test
+    public void testSuggest_Then_LimitedToLimit() {
+        //Act
+        List<SuggestionDto> suggestions = sut.suggest("l", null, 2);
+
+        //Assert
+        assertEquals(Arrays.asList(2L, 3L), ids(suggestions));
+        assertEquals("William Golding", suggestions.get(0).getAuthor());
+    }
+
+    @Test
+    public void testOnCatalogChanged_Then_RenamedBookIsFoundByItsNewTitleOnly() {
+        //Arrange
+        when(bookRepository.findAllById(Collections.singletonList(4L)))
+                .thenReturn(Collections.singletonList(book(4L, "Small Gods", "Terry Pratchett", Categories.FICTION)));
+
+        //Act
+        sut.onCatalogChanged(CatalogChangedEvent.of(4L));
+
+        //Assert
+        assertEquals(Collections.singletonList(1L), ids(sut.suggest("lord", Categories.FICTION, 10)));
+        assertEquals(Collections.singletonList(4L), ids(sut.suggest("gods", null, 10)));
+    }
+
+    @Test
+    public void testOnCatalogChanged_Then_MoreSalesMoveBookUp() {
+        //Arrange
+        when(salesLedger.getSoldCount(4L)).thenReturn(100L);
+        when(bookRepository.findAllById(Collections.singletonList(4L)))
+                .thenReturn(Collections.singletonList(book(4L, "Lords and Ladies", "Terry Pratchett", Categories.FICTION)));
+
+        //Act
+        sut.onCatalogChanged(CatalogChangedEvent.of(4L));
+
+        //Assert
+        assertEquals(Arrays.asList(4L, 2L, 1L), ids(sut.suggest("lord", null, 10)));
+    }
+
+    @Test
+    public void testOnCatalogChanged_Given_BookGone_Then_NotSuggested() {
+        //Act
+        sut.onCatalogChanged(CatalogChangedEvent.of(2L));
+
+        //Assert
+        assertEquals(Arrays.asList(1L, 4L), ids(sut.suggest("lord", null, 10)));
+        assertTrue(sut.suggest("golding", null, 10).isEmpty());
+    }
+
+    private static List<Long> ids(List<SuggestionDto> suggestions) {
+        return suggestions.stream().map(SuggestionDto::getId).collect(Collectors.toList());
+    }
+
+    private static Book book(Long id, String title, String author, Categories categories) {
+        return Book.builder().id(id).title(title).author(author).categories(categories).build();
+    }
+}